@@ -0,0 +1,37 @@
+package org.jboss.ddoyle.drools.demo.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base class of the benchmarks that run the test DRLs. The consequences of these DRLs print every match, which would flood the benchmark
+ * output, so <code>System.out</code> is replaced by a stream that discards all output for the duration of the trial.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public abstract class AbstractSystemOutSuppressingBenchmark {
+
+	private static final PrintStream NULL_PRINT_STREAM = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+	});
+
+	private PrintStream systemOut;
+
+	@Setup(Level.Trial)
+	public void suppressSystemOut() {
+		systemOut = System.out;
+		System.setOut(NULL_PRINT_STREAM);
+	}
+
+	@TearDown(Level.Trial)
+	public void restoreSystemOut() {
+		System.setOut(systemOut);
+	}
+
+}
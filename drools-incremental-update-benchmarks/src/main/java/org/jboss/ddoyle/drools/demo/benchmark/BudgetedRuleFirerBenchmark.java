@@ -0,0 +1,120 @@
+package org.jboss.ddoyle.drools.demo.benchmark;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.jboss.ddoyle.drools.demo.session.BudgetedRuleFirer;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency distribution of {@link BudgetedRuleFirer#insertAndFire(org.jboss.ddoyle.drools.demo.model.v1.Event)} while a
+ * session catches up with an added rule. Every iteration fills a fresh session with the <code>originalRules/rules.drl</code> rules with
+ * events, updates it to the <code>addedRules/rules.drl</code> rules and then inserts new events through a {@link BudgetedRuleFirer}, which
+ * works off the backlog of <code>SimpleTestRule-Three</code> in slices of <code>maxRulesPerFire</code> rules.
+ * <p/>
+ * The sampled percentiles JMH reports (e.g. <code>p0.99</code>) can be compared with a latency target such as a 5 ms p99. The first insert
+ * after the update also evaluates the network of the added rule against all events in the session, which the budget doesn't bound, so it
+ * shows up in the highest percentiles.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Thread)
+public class BudgetedRuleFirerBenchmark extends AbstractSystemOutSuppressingBenchmark {
+
+	private static final long START_TIMESTAMP = 1424678400000L;
+
+	/**
+	 * The events are 1 second apart, so the events of an iteration stay within the 2 day '@expires' window.
+	 */
+	private static final long EVENT_INTERVAL_MILLIS = 1000;
+
+	@Param({ "10000", "100000" })
+	public int nrOfEvents;
+
+	@Param({ "10", "100", "1000" })
+	public int maxRulesPerFire;
+
+	/**
+	 * One in every <code>codeCardinality</code> events has code <code>MY_CODE</code>, the code the rules match on.
+	 */
+	@Param({ "10" })
+	public int codeCardinality;
+
+	private KieServices kieServices;
+
+	private int version = 0;
+
+	private KieSession kieSession;
+
+	private BudgetedRuleFirer firer;
+
+	private int eventCounter;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		kieServices = KieServices.Factory.get();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() {
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "benchmark-budgeted-rule-firer", "1.0." + version++);
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("originalRules/rules.drl")));
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		kieSession = kieContainer.newKieSession();
+
+		for (eventCounter = 0; eventCounter < nrOfEvents; eventCounter++) {
+			KieTestUtils.insertAndAdvance(kieSession, nextEvent());
+		}
+		kieSession.fireAllRules();
+
+		ReleaseId updatedReleaseId = kieServices.newReleaseId("org.kie", "benchmark-budgeted-rule-firer", "1.0." + version++);
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, updatedReleaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl")));
+		kieContainer.updateToVersion(updatedReleaseId);
+
+		firer = new BudgetedRuleFirer(kieSession, maxRulesPerFire);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() {
+		kieSession.dispose();
+	}
+
+	@Benchmark
+	public int insertAndFire() {
+		int rulesFired = firer.insertAndFire(nextEvent());
+		eventCounter++;
+		return rulesFired;
+	}
+
+	private SimpleEvent nextEvent() {
+		String code = (eventCounter % codeCardinality == 0) ? "MY_CODE" : "CODE_" + (eventCounter % codeCardinality);
+		return new SimpleEvent(Integer.toString(eventCounter), code, START_TIMESTAMP + eventCounter * EVENT_INTERVAL_MILLIS);
+	}
+
+}
@@ -0,0 +1,102 @@
+package org.jboss.ddoyle.drools.demo.benchmark;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.KieTestUtils.ResourceWrapper;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.conf.EqualityBehaviorOption;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the insert throughput of {@link SimpleEvent SimpleEvents} in a KieBase with <code>EQUALITY</code> behaviour, in which the id
+ * based equality of {@link SimpleEvent} suppresses duplicate inserts, against a KieBase with <code>IDENTITY</code> behaviour.
+ * <p/>
+ * The session is filled with the <code>equalityBehavior/rules.drl</code> rules, which only have an alpha constraint, so the cost of an
+ * insert is not hidden by the join of the <code>not ... after</code> of the other test DRLs. Every iteration inserts the same events in a
+ * fresh session.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Thread)
+public class EqualityBehaviorBenchmark extends AbstractSystemOutSuppressingBenchmark {
+
+	private static final int NR_OF_EVENTS = 100000;
+
+	private static final long START_TIMESTAMP = 1424678400000L;
+
+	@Param({ "EQUALITY", "IDENTITY" })
+	public String equalityBehavior;
+
+	/**
+	 * One in every <code>codeCardinality</code> events has code <code>MY_CODE</code>, the code the rule matches on.
+	 */
+	@Param({ "100" })
+	public int codeCardinality;
+
+	private KieContainer kieContainer;
+
+	private SimpleEvent[] events;
+
+	private KieSession kieSession;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "benchmark-equality-" + equalityBehavior.toLowerCase(), "1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, new ResourceWrapper(kieServices.getResources().newClassPathResource(
+						"equalityBehavior/rules.drl"), "rules.drl"), EqualityBehaviorOption.valueOf(equalityBehavior)));
+		kieContainer = kieServices.newKieContainer(releaseId);
+
+		events = new SimpleEvent[NR_OF_EVENTS];
+		for (int counter = 0; counter < NR_OF_EVENTS; counter++) {
+			String code = (counter % codeCardinality == 0) ? "MY_CODE" : "CODE_" + (counter % codeCardinality);
+			events[counter] = new SimpleEvent(Integer.toString(counter), code, START_TIMESTAMP + counter);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpInvocation() {
+		kieSession = kieContainer.newKieSession();
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDownInvocation() {
+		kieSession.dispose();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NR_OF_EVENTS)
+	public int insert() {
+		for (SimpleEvent nextEvent : events) {
+			KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+		}
+		return kieSession.fireAllRules();
+	}
+
+}
@@ -0,0 +1,112 @@
+package org.jboss.ddoyle.drools.demo.benchmark;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.KieTestUtils.ResourceWrapper;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to insert a stream of {@link SimpleEvent SimpleEvents} into a session with the
+ * <code>not SimpleEvent(this != $s, this after [0,10s] $s)</code> pattern of <code>SimpleTestRule-Two</code>, against a session with the
+ * <code>equalityBehavior/rules.drl</code> rules, which only have an alpha constraint.
+ * <p/>
+ * Drools 6.2 only indexes the beta memories of equality constraints. The temporal constraint of the <code>not</code> is evaluated against
+ * every event in the memory of the <code>not</code> node, which holds all events of the 2 day '@expires' window, so the time per insert grows
+ * with the number of events in the session and the total time with its square. Comparing the total time over the
+ * <code>nrOfEvents</code> parameters shows this growth.
+ * <p/>
+ * An index on the event timestamp that lets an <code>after [a,b]</code> join only scan the matching time range is a deferred follow-up, as
+ * it requires changes to the beta memories of the engine itself. This benchmark is the baseline to measure such an index against.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Thread)
+public class TemporalJoinBenchmark extends AbstractSystemOutSuppressingBenchmark {
+
+	private static final long START_TIMESTAMP = 1424678400000L;
+
+	/**
+	 * The events are 1 second apart, so all events of the largest session fall within the 2 day '@expires' window.
+	 */
+	private static final long EVENT_INTERVAL_MILLIS = 1000;
+
+	@Param({ "originalRules/rules.drl", "equalityBehavior/rules.drl" })
+	public String drl;
+
+	@Param({ "1000", "10000", "50000" })
+	public int nrOfEvents;
+
+	/**
+	 * One in every <code>codeCardinality</code> events has code <code>MY_CODE</code>, the code the rules match on.
+	 */
+	@Param({ "10" })
+	public int codeCardinality;
+
+	private KieContainer kieContainer;
+
+	private SimpleEvent[] events;
+
+	private KieSession kieSession;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "benchmark-temporal-join-" + drl.replace('/', '-').replace('.', '-'),
+				"1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, new ResourceWrapper(kieServices.getResources().newClassPathResource(drl), "rules.drl")));
+		kieContainer = kieServices.newKieContainer(releaseId);
+
+		events = new SimpleEvent[nrOfEvents];
+		for (int counter = 0; counter < nrOfEvents; counter++) {
+			String code = (counter % codeCardinality == 0) ? "MY_CODE" : "CODE_" + (counter % codeCardinality);
+			events[counter] = new SimpleEvent(Integer.toString(counter), code, START_TIMESTAMP + counter * EVENT_INTERVAL_MILLIS);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpInvocation() {
+		kieSession = kieContainer.newKieSession();
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDownInvocation() {
+		kieSession.dispose();
+	}
+
+	@Benchmark
+	public int insertAndFire() {
+		int rulesFired = 0;
+		for (SimpleEvent nextEvent : events) {
+			KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+			rulesFired += kieSession.fireAllRules();
+		}
+		return rulesFired;
+	}
+
+}
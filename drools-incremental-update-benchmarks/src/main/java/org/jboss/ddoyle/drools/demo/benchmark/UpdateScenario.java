@@ -0,0 +1,57 @@
+package org.jboss.ddoyle.drools.demo.benchmark;
+
+import org.jboss.ddoyle.drools.demo.KieTestUtils.ResourceWrapper;
+import org.kie.api.KieServices;
+
+/**
+ * The incremental update scenarios exercised by the JUnit tests, expressed as the DRL the session starts with and the DRL it is updated
+ * to.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public enum UpdateScenario {
+
+	ADDED("originalRules/rules.drl", "rules.drl", "addedRules/rules.drl", "rules.drl"),
+
+	CHANGED("originalRules/rules.drl", "rules.drl", "changedRules/rules-1.drl", "rules.drl"),
+
+	RENAMED("originalRules/rules.drl", "rules.drl", "renamedRules/rules-1.drl", "rules.drl"),
+
+	DELETED("originalRules/rules.drl", "rules.drl", "deletedRules/rules-1.drl", "rules.drl"),
+
+	ACCUMULATE("accumulateRules/original-rules.drl", "rules.drl", "accumulateRules/renamed-rules.drl", "rules.drl"),
+
+	DIFFERENT_DRL("originalRules/rules.drl", "originalRules.drl", "originalRules/rules.drl", "newOriginalRules.drl");
+
+	private final String originalResource;
+
+	private final String originalTargetResourceName;
+
+	private final String updatedResource;
+
+	private final String updatedTargetResourceName;
+
+	private UpdateScenario(String originalResource, String originalTargetResourceName, String updatedResource,
+			String updatedTargetResourceName) {
+		this.originalResource = originalResource;
+		this.originalTargetResourceName = originalTargetResourceName;
+		this.updatedResource = updatedResource;
+		this.updatedTargetResourceName = updatedTargetResourceName;
+	}
+
+	public ResourceWrapper getOriginalResource(KieServices kieServices) {
+		return new ResourceWrapper(kieServices.getResources().newClassPathResource(originalResource), originalTargetResourceName);
+	}
+
+	public ResourceWrapper getUpdatedResource(KieServices kieServices) {
+		return new ResourceWrapper(kieServices.getResources().newClassPathResource(updatedResource), updatedTargetResourceName);
+	}
+
+	/**
+	 * The accumulate DRLs declare a global that needs to be set on the session.
+	 */
+	public boolean requiresAccumulateCount() {
+		return this == ACCUMULATE;
+	}
+
+}
@@ -0,0 +1,177 @@
+package org.jboss.ddoyle.drools.demo.benchmark;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAccumulateTest.AccumulateCount;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.jboss.ddoyle.drools.demo.update.ShadowKieBaseUpdater;
+import org.jboss.ddoyle.drools.demo.update.ShadowKieBaseUpdater.PreparedUpdate;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the pause of {@link KieContainer#updateToVersion(ReleaseId)} on a stateful STREAM session (created from the 'KSession1' model
+ * of {@link KieTestUtils#createKieFileSystemWithKProject(KieServices, boolean)}) as a function of the number of {@link SimpleEvent}
+ * facts in the session.
+ * <p/>
+ * Every iteration builds a fresh session, fills it with events and fires the rules before the update is measured, so each measurement is
+ * a single, cold update. This is also why the largest session sizes take a long time to set up: the <code>not ... after [0,10s]</code>
+ * pattern of <code>SimpleTestRule-Two</code> joins every <code>MY_CODE</code> event against every other event in the session.
+ * <p/>
+ * With <code>shadowPrepared</code> set, the updated KJAR is built and verified by a {@link ShadowKieBaseUpdater} before the measurement
+ * and the measured pause is the {@link PreparedUpdate#cutOver()}.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Thread)
+public class UpdateToVersionBenchmark extends AbstractSystemOutSuppressingBenchmark {
+
+	/**
+	 * The 2 day '@expires' window of the test DRLs, all generated events must fall within this window.
+	 */
+	private static final long EVENT_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(2);
+
+	private static final long START_TIMESTAMP = 1424678400000L;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int nrOfEvents;
+
+	@Param({ "ADDED", "CHANGED", "RENAMED", "DELETED", "ACCUMULATE", "DIFFERENT_DRL" })
+	public String scenario;
+
+	/**
+	 * One in every <code>codeCardinality</code> events has code <code>MY_CODE</code>, the code all test rules match on. The others get one
+	 * of <code>codeCardinality - 1</code> other codes.
+	 */
+	@Param({ "100" })
+	public int codeCardinality;
+
+	@Param({ "false", "true" })
+	public boolean shadowPrepared;
+
+	private KieServices kieServices;
+
+	private UpdateScenario updateScenario;
+
+	private int version = 0;
+
+	private KieContainer kieContainer;
+
+	private KieSession kieSession;
+
+	private ReleaseId updatedReleaseId;
+
+	private ExecutorService executor;
+
+	private PreparedUpdate preparedUpdate;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		kieServices = KieServices.Factory.get();
+		updateScenario = UpdateScenario.valueOf(scenario);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTrial() {
+		executor.shutdown();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws Exception {
+		ReleaseId originalReleaseId = kieServices.newReleaseId("org.kie", "benchmark-" + scenario.toLowerCase(), "1.0." + version++);
+		InternalKieModule originalKieModule = createKieJar(kieServices, originalReleaseId,
+				updateScenario.getOriginalResource(kieServices));
+		kieServices.getRepository().addKieModule(originalKieModule);
+
+		kieContainer = kieServices.newKieContainer(originalReleaseId);
+		kieSession = kieContainer.newKieSession();
+		if (updateScenario.requiresAccumulateCount()) {
+			kieSession.setGlobal("accCount", new AccumulateCount());
+		}
+
+		long eventInterval = Math.max(1, EVENT_WINDOW_MILLIS / nrOfEvents);
+		for (int counter = 0; counter < nrOfEvents; counter++) {
+			String code = (counter % codeCardinality == 0) ? "MY_CODE" : "CODE_" + (counter % codeCardinality);
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent(Integer.toString(counter), code, new Date(START_TIMESTAMP
+					+ (counter * eventInterval))));
+		}
+		kieSession.fireAllRules();
+
+		updatedReleaseId = kieServices.newReleaseId("org.kie", "benchmark-" + scenario.toLowerCase(), "1.0." + version++);
+		final InternalKieModule updatedKieModule = createKieJar(kieServices, updatedReleaseId,
+				updateScenario.getUpdatedResource(kieServices));
+		if (shadowPrepared) {
+			// The updater deploys the KJAR on cut-over.
+			preparedUpdate = new ShadowKieBaseUpdater(kieServices, kieContainer, executor).prepare(new Callable<InternalKieModule>() {
+				@Override
+				public InternalKieModule call() {
+					return updatedKieModule;
+				}
+			}, null).get();
+		} else {
+			preparedUpdate = null;
+			kieServices.getRepository().addKieModule(updatedKieModule);
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() {
+		kieSession.dispose();
+	}
+
+	/**
+	 * The pause of the update itself, i.e. removing and adding rules and network nodes.
+	 */
+	@Benchmark
+	public Results updateToVersion() {
+		return update();
+	}
+
+	/**
+	 * The full stall seen by an event pipeline: the update plus the first {@link KieSession#fireAllRules()}, which is where the lazily
+	 * evaluated network propagates the existing facts through new and changed rules.
+	 */
+	@Benchmark
+	public int updateToVersionAndFire() {
+		update();
+		return kieSession.fireAllRules();
+	}
+
+	private Results update() {
+		if (preparedUpdate != null) {
+			return preparedUpdate.cutOver();
+		}
+		return kieContainer.updateToVersion(updatedReleaseId);
+	}
+
+}
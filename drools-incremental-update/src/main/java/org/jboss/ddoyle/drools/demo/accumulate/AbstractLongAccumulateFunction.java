@@ -0,0 +1,82 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+
+import org.kie.api.runtime.rule.AccumulateFunction;
+
+/**
+ * Base class of the accumulate functions over <code>long</code> values. The values are unboxed once when they are accumulated and the
+ * contexts only keep primitive state, or a multiset of the values for the order based functions. All functions support reverse, so Drools
+ * doesn't recompute the accumulate from scratch when an event expires or is retracted, e.g. from a sliding <code>over window:time</code>.
+ * <p/>
+ * The contexts are {@link Serializable}, so the accumulated state is kept when a session is marshalled. An incremental update with
+ * {@link org.kie.api.runtime.KieContainer#updateToVersion(org.kie.api.builder.ReleaseId)} keeps the accumulate memories, and so the contexts,
+ * of the rules that didn't change.
+ * <p/>
+ * The functions are registered in a DRL with, for example, <code>import accumulate org.jboss.ddoyle.drools.demo.accumulate.LongSumFunction longSum</code>,
+ * or for all DRLs in a KieBase with the <code>drools.accumulate.function.longSum</code> configuration property. <code>null</code> values are
+ * ignored.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public abstract class AbstractLongAccumulateFunction<C extends Serializable> implements AccumulateFunction {
+
+	@Override
+	public abstract C createContext();
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void init(Serializable context) {
+		reset((C) context);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void accumulate(Serializable context, Object value) {
+		if (value != null) {
+			add((C) context, ((Number) value).longValue());
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void reverse(Serializable context, Object value) {
+		if (value != null) {
+			remove((C) context, ((Number) value).longValue());
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object getResult(Serializable context) {
+		return result((C) context);
+	}
+
+	@Override
+	public boolean supportsReverse() {
+		return true;
+	}
+
+	/**
+	 * The functions are stateless, all state is kept in their contexts.
+	 */
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+	}
+
+	protected abstract void reset(C context);
+
+	protected abstract void add(C context, long value);
+
+	protected abstract void remove(C context, long value);
+
+	protected abstract Object result(C context);
+
+}
@@ -0,0 +1,57 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+import java.io.Serializable;
+
+/**
+ * Averages the accumulated values. The sum is kept as a <code>long</code>, so reversing values doesn't accumulate rounding errors.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongAverageFunction extends AbstractLongAccumulateFunction<LongAverageFunction.AverageContext> {
+
+	@Override
+	public AverageContext createContext() {
+		return new AverageContext();
+	}
+
+	@Override
+	protected void reset(AverageContext context) {
+		context.sum = 0;
+		context.count = 0;
+	}
+
+	@Override
+	protected void add(AverageContext context, long value) {
+		context.sum += value;
+		context.count++;
+	}
+
+	@Override
+	protected void remove(AverageContext context, long value) {
+		context.sum -= value;
+		context.count--;
+	}
+
+	/**
+	 * @return the average, or <code>null</code> if no values are accumulated.
+	 */
+	@Override
+	protected Object result(AverageContext context) {
+		return (context.count == 0) ? null : Double.valueOf((double) context.sum / context.count);
+	}
+
+	@Override
+	public Class<?> getResultType() {
+		return Double.class;
+	}
+
+	public static class AverageContext implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private long sum;
+
+		private long count;
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+import java.io.Serializable;
+
+/**
+ * Counts the accumulated facts. Unlike the other functions, the count doesn't need a value, so <code>null</code> values are counted.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongCountFunction extends AbstractLongAccumulateFunction<LongCountFunction.CountContext> {
+
+	@Override
+	public CountContext createContext() {
+		return new CountContext();
+	}
+
+	@Override
+	public void accumulate(Serializable context, Object value) {
+		((CountContext) context).count++;
+	}
+
+	@Override
+	public void reverse(Serializable context, Object value) {
+		((CountContext) context).count--;
+	}
+
+	@Override
+	protected void reset(CountContext context) {
+		context.count = 0;
+	}
+
+	@Override
+	protected void add(CountContext context, long value) {
+		context.count++;
+	}
+
+	@Override
+	protected void remove(CountContext context, long value) {
+		context.count--;
+	}
+
+	@Override
+	protected Object result(CountContext context) {
+		return context.count;
+	}
+
+	@Override
+	public Class<?> getResultType() {
+		return Long.class;
+	}
+
+	public static class CountContext implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private long count;
+	}
+
+}
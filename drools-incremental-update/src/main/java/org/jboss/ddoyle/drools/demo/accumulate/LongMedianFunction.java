@@ -0,0 +1,14 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+/**
+ * Returns the median (50th percentile) of the accumulated values.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongMedianFunction extends LongPercentileFunction {
+
+	public LongMedianFunction() {
+		super(0.5);
+	}
+
+}
@@ -0,0 +1,15 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+/**
+ * Returns the minimum of the accumulated values, or <code>null</code> if no values are accumulated.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongMinFunction extends LongMultisetFunction {
+
+	@Override
+	protected Object result(LongMultiset context) {
+		return context.first();
+	}
+
+}
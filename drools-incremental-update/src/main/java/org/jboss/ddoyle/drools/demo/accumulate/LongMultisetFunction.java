@@ -0,0 +1,299 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Base class of the order based functions (min, max and percentiles), which keep the accumulated values in a sorted multiset. Adding and
+ * reversing a value and looking up the value with a given rank are expected O(log n) in the number of distinct values.
+ * <p/>
+ * A monotonic deque would give O(1) min and max, but only for values that are reversed in the order they were accumulated. Drools
+ * reverses the values of retracted facts in any order, and events don't necessarily expire in the order they were inserted.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public abstract class LongMultisetFunction extends AbstractLongAccumulateFunction<LongMultisetFunction.LongMultiset> {
+
+	@Override
+	public LongMultiset createContext() {
+		return new LongMultiset();
+	}
+
+	@Override
+	protected void reset(LongMultiset context) {
+		context.clear();
+	}
+
+	@Override
+	protected void add(LongMultiset context, long value) {
+		context.add(value);
+	}
+
+	@Override
+	protected void remove(LongMultiset context, long value) {
+		context.remove(value);
+	}
+
+	@Override
+	public Class<?> getResultType() {
+		return Long.class;
+	}
+
+	/**
+	 * The accumulated values, with the number of times each value is accumulated. The distinct values are kept in a treap, a binary search
+	 * tree that is balanced by random node priorities, of which every node also keeps the number of values in its subtree. These counts
+	 * give the value with a given rank in a single walk down the tree.
+	 * <p/>
+	 * The nodes are stored in primitive arrays, so values aren't boxed and there are no entry objects. The arrays grow with the number of
+	 * distinct values and the nodes of removed values are reused, the arrays only shrink when the multiset is cleared.
+	 */
+	public static class LongMultiset implements Serializable {
+
+		private static final long serialVersionUID = 2L;
+
+		private static final int INITIAL_CAPACITY = 16;
+
+		/**
+		 * The empty node. Its subtree size is always 0.
+		 */
+		private static final int NIL = 0;
+
+		private long[] values;
+
+		private int[] counts;
+
+		private long[] sizes;
+
+		private int[] priorities;
+
+		private int[] left;
+
+		private int[] right;
+
+		private int root;
+
+		/**
+		 * The next node that has never been used.
+		 */
+		private int nextNode;
+
+		/**
+		 * The first node of the list of removed nodes, which are linked through their right child.
+		 */
+		private int freeNode;
+
+		private int seed = 0x2545F491;
+
+		public LongMultiset() {
+			clear();
+		}
+
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		public long size() {
+			return sizes[root];
+		}
+
+		public Long first() {
+			if (isEmpty()) {
+				return null;
+			}
+			int node = root;
+			while (left[node] != NIL) {
+				node = left[node];
+			}
+			return values[node];
+		}
+
+		public Long last() {
+			if (isEmpty()) {
+				return null;
+			}
+			int node = root;
+			while (right[node] != NIL) {
+				node = right[node];
+			}
+			return values[node];
+		}
+
+		/**
+		 * @return the value with the given 1-based rank in the sorted values, or <code>null</code> if the rank is not between 1 and the size
+		 *         of the multiset.
+		 */
+		public Long get(long rank) {
+			if (rank < 1 || rank > size()) {
+				return null;
+			}
+			int node = root;
+			long remainingRank = rank;
+			while (true) {
+				long leftSize = sizes[left[node]];
+				if (remainingRank <= leftSize) {
+					node = left[node];
+				} else if (remainingRank <= leftSize + counts[node]) {
+					return values[node];
+				} else {
+					remainingRank -= leftSize + counts[node];
+					node = right[node];
+				}
+			}
+		}
+
+		private void clear() {
+			values = new long[INITIAL_CAPACITY];
+			counts = new int[INITIAL_CAPACITY];
+			sizes = new long[INITIAL_CAPACITY];
+			priorities = new int[INITIAL_CAPACITY];
+			left = new int[INITIAL_CAPACITY];
+			right = new int[INITIAL_CAPACITY];
+			root = NIL;
+			nextNode = NIL + 1;
+			freeNode = NIL;
+		}
+
+		private void add(long value) {
+			root = insert(root, value);
+		}
+
+		private void remove(long value) {
+			if (!contains(value)) {
+				throw new IllegalStateException("Reversing value '" + value + "' that has not been accumulated.");
+			}
+			root = delete(root, value);
+		}
+
+		private boolean contains(long value) {
+			int node = root;
+			while (node != NIL && values[node] != value) {
+				node = (value < values[node]) ? left[node] : right[node];
+			}
+			return node != NIL;
+		}
+
+		private int insert(int node, long value) {
+			if (node == NIL) {
+				return newNode(value);
+			}
+			// The arrays can grow while inserting into a subtree, so they are only dereferenced after the insert.
+			if (value < values[node]) {
+				int child = insert(left[node], value);
+				left[node] = child;
+				if (priorities[child] > priorities[node]) {
+					return rotateRight(node);
+				}
+			} else if (value > values[node]) {
+				int child = insert(right[node], value);
+				right[node] = child;
+				if (priorities[child] > priorities[node]) {
+					return rotateLeft(node);
+				}
+			} else {
+				counts[node]++;
+			}
+			updateSize(node);
+			return node;
+		}
+
+		private int delete(int node, long value) {
+			if (value < values[node]) {
+				left[node] = delete(left[node], value);
+			} else if (value > values[node]) {
+				right[node] = delete(right[node], value);
+			} else if (counts[node] > 1) {
+				counts[node]--;
+			} else {
+				return deleteNode(node);
+			}
+			updateSize(node);
+			return node;
+		}
+
+		/**
+		 * Rotates the node down, below the child with the highest priority, until it has at most one child, and then replaces it by that
+		 * child.
+		 */
+		private int deleteNode(int node) {
+			if (left[node] == NIL || right[node] == NIL) {
+				int child = (left[node] == NIL) ? right[node] : left[node];
+				right[node] = freeNode;
+				freeNode = node;
+				return child;
+			}
+			int top;
+			if (priorities[left[node]] > priorities[right[node]]) {
+				top = rotateRight(node);
+				right[top] = deleteNode(node);
+			} else {
+				top = rotateLeft(node);
+				left[top] = deleteNode(node);
+			}
+			updateSize(top);
+			return top;
+		}
+
+		private int rotateRight(int node) {
+			int top = left[node];
+			left[node] = right[top];
+			right[top] = node;
+			updateSize(node);
+			updateSize(top);
+			return top;
+		}
+
+		private int rotateLeft(int node) {
+			int top = right[node];
+			right[node] = left[top];
+			left[top] = node;
+			updateSize(node);
+			updateSize(top);
+			return top;
+		}
+
+		private void updateSize(int node) {
+			sizes[node] = sizes[left[node]] + sizes[right[node]] + counts[node];
+		}
+
+		private int newNode(long value) {
+			int node;
+			if (freeNode != NIL) {
+				node = freeNode;
+				freeNode = right[node];
+			} else {
+				if (nextNode == values.length) {
+					grow();
+				}
+				node = nextNode++;
+			}
+			values[node] = value;
+			counts[node] = 1;
+			sizes[node] = 1;
+			priorities[node] = nextPriority();
+			left[node] = NIL;
+			right[node] = NIL;
+			return node;
+		}
+
+		private void grow() {
+			int capacity = values.length * 2;
+			values = Arrays.copyOf(values, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+			priorities = Arrays.copyOf(priorities, capacity);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+		}
+
+		/**
+		 * Xorshift, so the priorities don't need a (non-primitive) random generator.
+		 */
+		private int nextPriority() {
+			seed ^= seed << 13;
+			seed ^= seed >>> 17;
+			seed ^= seed << 5;
+			return seed;
+		}
+	}
+
+}
@@ -0,0 +1,14 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+/**
+ * Returns the 95th percentile of the accumulated values.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongPercentile95Function extends LongPercentileFunction {
+
+	public LongPercentile95Function() {
+		super(0.95);
+	}
+
+}
@@ -0,0 +1,14 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+/**
+ * Returns the 99th percentile of the accumulated values.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongPercentile99Function extends LongPercentileFunction {
+
+	public LongPercentile99Function() {
+		super(0.99);
+	}
+
+}
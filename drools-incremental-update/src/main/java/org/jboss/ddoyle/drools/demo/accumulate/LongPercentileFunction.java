@@ -0,0 +1,33 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+/**
+ * Returns a percentile of the accumulated values with the nearest-rank method, i.e. the smallest value of which at least the given
+ * percentage of the values is smaller or equal, or <code>null</code> if no values are accumulated. Computing the result is O(log n) in the
+ * number of distinct values. Drools registers accumulate functions by class, so every percentile has its own subclass.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public abstract class LongPercentileFunction extends LongMultisetFunction {
+
+	private final double percentile;
+
+	/**
+	 * @param percentile
+	 *            the percentile, between 0 (exclusive) and 1 (inclusive).
+	 */
+	protected LongPercentileFunction(double percentile) {
+		if (percentile <= 0 || percentile > 1) {
+			throw new IllegalArgumentException("Percentile must be between 0 (exclusive) and 1 (inclusive): " + percentile);
+		}
+		this.percentile = percentile;
+	}
+
+	@Override
+	protected Object result(LongMultiset context) {
+		if (context.isEmpty()) {
+			return null;
+		}
+		return context.get((long) Math.ceil(percentile * context.size()));
+	}
+
+}
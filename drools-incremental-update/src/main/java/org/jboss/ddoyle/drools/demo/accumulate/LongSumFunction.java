@@ -0,0 +1,49 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+import java.io.Serializable;
+
+/**
+ * Sums the accumulated values.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongSumFunction extends AbstractLongAccumulateFunction<LongSumFunction.SumContext> {
+
+	@Override
+	public SumContext createContext() {
+		return new SumContext();
+	}
+
+	@Override
+	protected void reset(SumContext context) {
+		context.sum = 0;
+	}
+
+	@Override
+	protected void add(SumContext context, long value) {
+		context.sum += value;
+	}
+
+	@Override
+	protected void remove(SumContext context, long value) {
+		context.sum -= value;
+	}
+
+	@Override
+	protected Object result(SumContext context) {
+		return context.sum;
+	}
+
+	@Override
+	public Class<?> getResultType() {
+		return Long.class;
+	}
+
+	public static class SumContext implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private long sum;
+	}
+
+}
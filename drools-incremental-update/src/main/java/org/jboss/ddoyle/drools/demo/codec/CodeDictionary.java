@@ -0,0 +1,82 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary which assigns a compact index to every distinct event <code>code</code>. Not thread-safe, a dictionary is meant to be used by
+ * a single encoder or decoder.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class CodeDictionary {
+
+	private final Map<String, Integer> indexes = new HashMap<>();
+
+	private final List<String> codes = new ArrayList<>();
+
+	/**
+	 * @return the index of the code, or <code>-1</code> if the code is not in this dictionary.
+	 */
+	public int indexOf(String code) {
+		Integer index = indexes.get(code);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * Adds the code to this dictionary if it's not yet part of it.
+	 * 
+	 * @return the index of the code.
+	 */
+	public int add(String code) {
+		Integer index = indexes.get(code);
+		if (index == null) {
+			// Interned, just like SimpleEvent does, so decoded events share their code instances.
+			String internedCode = code.intern();
+			index = codes.size();
+			codes.add(internedCode);
+			indexes.put(internedCode, index);
+		}
+		return index;
+	}
+
+	public String get(int index) throws IOException {
+		if (index < 0 || index >= codes.size()) {
+			throw new IOException("Unknown code index: " + index);
+		}
+		return codes.get(index);
+	}
+
+	public int size() {
+		return codes.size();
+	}
+
+	public void writeTo(DataOutput out) throws IOException {
+		VarInts.writeUnsignedVarInt(out, codes.size());
+		for (String nextCode : codes) {
+			out.writeUTF(nextCode);
+		}
+	}
+
+	/**
+	 * Reads a dictionary written by {@link #writeTo(DataOutput)}, with the same indexes. Must be called on an empty dictionary.
+	 * 
+	 * @throws IllegalStateException
+	 *             if this dictionary is not empty.
+	 */
+	public void readFrom(DataInput in) throws IOException {
+		if (!codes.isEmpty()) {
+			throw new IllegalStateException("Can only read into an empty dictionary.");
+		}
+		int size = VarInts.readUnsignedVarInt(in);
+		for (int counter = 0; counter < size; counter++) {
+			add(in.readUTF());
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+
+/**
+ * Reads a replay log written by the {@link EventLogWriter}.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class EventLogReader implements Closeable {
+
+	private final DataInputStream in;
+
+	private final SimpleEventCodec codec = new SimpleEventCodec(new CodeDictionary(), true);
+
+	private long previousTimestamp = 0;
+
+	private boolean endOfLog = false;
+
+	public EventLogReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		if (this.in.readInt() != EventLogWriter.MAGIC) {
+			throw new IOException("Not an event log.");
+		}
+		int version = this.in.readUnsignedByte();
+		if (version != EventLogWriter.VERSION) {
+			throw new IOException("Unsupported event log version: " + version);
+		}
+	}
+
+	/**
+	 * @return the next event in the log, or <code>null</code> when the end of the log has been reached.
+	 */
+	public SimpleEvent read() throws IOException {
+		if (endOfLog || !in.readBoolean()) {
+			endOfLog = true;
+			return null;
+		}
+		SimpleEvent event = codec.read(in, previousTimestamp);
+		previousTimestamp = event.getTimestampMillis();
+		return event;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
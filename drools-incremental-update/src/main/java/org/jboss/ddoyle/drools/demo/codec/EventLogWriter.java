@@ -0,0 +1,60 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+
+/**
+ * Writes a replay log of {@link SimpleEvent SimpleEvents}, encoded with the {@link SimpleEventCodec}. Codes are dictionary coded and
+ * defined inline on their first occurrence, and every timestamp is stored as the delta to the timestamp of the previous event, so a log
+ * of time-ordered events costs a few bytes per event on top of its ids. Logs are read with the {@link EventLogReader}.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class EventLogWriter implements Closeable, Flushable {
+
+	static final int MAGIC = 0x53454C47;
+
+	static final int VERSION = 1;
+
+	private final DataOutputStream out;
+
+	private final SimpleEventCodec codec = new SimpleEventCodec(new CodeDictionary(), true);
+
+	private long previousTimestamp = 0;
+
+	public EventLogWriter(OutputStream out) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+	}
+
+	public void write(SimpleEvent event) throws IOException {
+		out.writeBoolean(true);
+		codec.write(out, event, previousTimestamp);
+		previousTimestamp = event.getTimestampMillis();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes the end-of-log marker and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			out.writeBoolean(false);
+		} finally {
+			out.close();
+		}
+	}
+
+}
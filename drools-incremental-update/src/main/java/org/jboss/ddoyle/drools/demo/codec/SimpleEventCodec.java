@@ -0,0 +1,257 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+
+/**
+ * Compact binary codec for {@link SimpleEvent}, replacing default Java serialization. An encoded event consists of:
+ * <ul>
+ * <li>a header byte, describing the form of the id and the code.</li>
+ * <li>the id: a variable length long for numeric ids, 2 longs for (lower case) UUIDs, a UTF string for any other id, or nothing for a
+ * <code>null</code> id.</li>
+ * <li>the code: nothing for a <code>null</code> code, a UTF string, or a variable length index into a {@link CodeDictionary}.</li>
+ * <li>the timestamp, as a zig-zag encoded variable length delta to a base timestamp provided by the caller.</li>
+ * </ul>
+ * When a dictionary is used, codes can either be defined inline, i.e. the first occurrence of a code carries the code and its addition to
+ * the dictionary, which makes a stream self-contained as long as it is decoded in the order it was encoded, or be referenced only, in
+ * which case the dictionary itself has to be stored next to the encoded events.
+ * <p/>
+ * Not thread-safe, a codec with a dictionary keeps state between events.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class SimpleEventCodec {
+
+	private static final int ID_NUMERIC = 0x00;
+
+	private static final int ID_UUID = 0x01;
+
+	private static final int ID_STRING = 0x02;
+
+	private static final int ID_NULL = 0x03;
+
+	private static final int ID_MASK = 0x03;
+
+	private static final int CODE_NULL = 0x00;
+
+	private static final int CODE_STRING = 0x04;
+
+	private static final int CODE_REFERENCE = 0x08;
+
+	private static final int CODE_DEFINITION = 0x0C;
+
+	private static final int CODE_MASK = 0x0C;
+
+	private static final int CANONICAL_UUID_LENGTH = 36;
+
+	/**
+	 * Numeric ids with more digits might not fit in a long.
+	 */
+	private static final int MAX_NUMERIC_ID_LENGTH = 18;
+
+	private final CodeDictionary dictionary;
+
+	private final boolean defineCodesInline;
+
+	/**
+	 * Creates a codec which writes every code as a string.
+	 */
+	public SimpleEventCodec() {
+		this(null, false);
+	}
+
+	/**
+	 * Creates a codec which writes the codes as an index into the given {@link CodeDictionary}.
+	 * 
+	 * @param dictionary
+	 *            the dictionary.
+	 * @param defineCodesInline
+	 *            whether the first occurrence of a code in the stream defines the code. If <code>false</code>, the dictionary has to be
+	 *            stored separately and needs to be complete before decoding.
+	 */
+	public SimpleEventCodec(CodeDictionary dictionary, boolean defineCodesInline) {
+		this.dictionary = dictionary;
+		this.defineCodesInline = defineCodesInline;
+	}
+
+	public CodeDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public void write(DataOutput out, SimpleEvent event) throws IOException {
+		write(out, event, 0);
+	}
+
+	/**
+	 * Writes the event, with its timestamp encoded as a delta to the given base timestamp.
+	 */
+	public void write(DataOutput out, SimpleEvent event, long baseTimestamp) throws IOException {
+		String id = event.getId();
+		String code = event.getCode();
+
+		int idForm = getIdForm(id);
+		int codeForm;
+		int codeIndex = -1;
+		if (code == null) {
+			codeForm = CODE_NULL;
+		} else if (dictionary == null) {
+			codeForm = CODE_STRING;
+		} else {
+			codeIndex = dictionary.indexOf(code);
+			if (codeIndex >= 0) {
+				codeForm = CODE_REFERENCE;
+			} else if (defineCodesInline) {
+				codeForm = CODE_DEFINITION;
+				dictionary.add(code);
+			} else {
+				codeForm = CODE_REFERENCE;
+				codeIndex = dictionary.add(code);
+			}
+		}
+		out.writeByte(idForm | codeForm);
+
+		switch (idForm) {
+		case ID_NUMERIC:
+			VarInts.writeUnsignedVarLong(out, Long.parseLong(id));
+			break;
+		case ID_UUID:
+			UUID uuid = UUID.fromString(id);
+			out.writeLong(uuid.getMostSignificantBits());
+			out.writeLong(uuid.getLeastSignificantBits());
+			break;
+		case ID_STRING:
+			out.writeUTF(id);
+			break;
+		default:
+			break;
+		}
+
+		switch (codeForm) {
+		case CODE_STRING:
+		case CODE_DEFINITION:
+			out.writeUTF(code);
+			break;
+		case CODE_REFERENCE:
+			VarInts.writeUnsignedVarInt(out, codeIndex);
+			break;
+		default:
+			break;
+		}
+
+		VarInts.writeVarLong(out, event.getTimestampMillis() - baseTimestamp);
+	}
+
+	public SimpleEvent read(DataInput in) throws IOException {
+		return read(in, 0);
+	}
+
+	/**
+	 * Reads an event which was written with the given base timestamp.
+	 */
+	public SimpleEvent read(DataInput in, long baseTimestamp) throws IOException {
+		int header = in.readUnsignedByte();
+
+		String id;
+		switch (header & ID_MASK) {
+		case ID_NUMERIC:
+			id = Long.toString(VarInts.readUnsignedVarLong(in));
+			break;
+		case ID_UUID:
+			id = new UUID(in.readLong(), in.readLong()).toString();
+			break;
+		case ID_STRING:
+			id = in.readUTF();
+			break;
+		default:
+			id = null;
+			break;
+		}
+
+		String code;
+		switch (header & CODE_MASK) {
+		case CODE_NULL:
+			code = null;
+			break;
+		case CODE_STRING:
+			code = in.readUTF();
+			break;
+		case CODE_REFERENCE:
+			code = getDictionaryForRead().get(VarInts.readUnsignedVarInt(in));
+			break;
+		default:
+			code = in.readUTF();
+			getDictionaryForRead().add(code);
+			break;
+		}
+
+		long timestamp = baseTimestamp + VarInts.readVarLong(in);
+		return new SimpleEvent(id, code, timestamp);
+	}
+
+	private CodeDictionary getDictionaryForRead() throws IOException {
+		if (dictionary == null) {
+			throw new IOException("Encountered a dictionary coded event, but this codec has no dictionary.");
+		}
+		return dictionary;
+	}
+
+	/**
+	 * Determines the most compact form of the id that still decodes to the exact same string.
+	 */
+	private static int getIdForm(String id) {
+		if (id == null) {
+			return ID_NULL;
+		}
+		if (isNumericId(id)) {
+			return ID_NUMERIC;
+		}
+		if (isCanonicalUuid(id)) {
+			return ID_UUID;
+		}
+		return ID_STRING;
+	}
+
+	/**
+	 * @return <code>true</code> if the id is a decimal number without leading zeros that fits in a <code>long</code>, so
+	 *         {@link Long#toString(long)} of the parsed id gives back the exact same string.
+	 */
+	public static boolean isNumericId(String id) {
+		int length = id.length();
+		if (length == 0 || length > MAX_NUMERIC_ID_LENGTH || (length > 1 && id.charAt(0) == '0')) {
+			return false;
+		}
+		for (int index = 0; index < length; index++) {
+			char nextChar = id.charAt(index);
+			if (nextChar < '0' || nextChar > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if the id is a UUID in its lower case canonical form, so {@link UUID#toString()} of the parsed id gives back
+	 *         the exact same string.
+	 */
+	public static boolean isCanonicalUuid(String id) {
+		if (id.length() != CANONICAL_UUID_LENGTH) {
+			return false;
+		}
+		for (int index = 0; index < CANONICAL_UUID_LENGTH; index++) {
+			char nextChar = id.charAt(index);
+			if (index == 8 || index == 13 || index == 18 || index == 23) {
+				if (nextChar != '-') {
+					return false;
+				}
+			} else if (!((nextChar >= '0' && nextChar <= '9') || (nextChar >= 'a' && nextChar <= 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,91 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+
+/**
+ * {@link ObjectMarshallingStrategy} which marshalls {@link SimpleEvent SimpleEvents} with the {@link SimpleEventCodec} instead of Java
+ * serialization. The codes of all events in a session snapshot are stored once, in a {@link CodeDictionary} which is written as the
+ * strategy's context.
+ * <p/>
+ * Register it before the serialization strategy, e.g.:
+ * 
+ * <pre>
+ * kieServices.getMarshallers().newMarshaller(kieBase,
+ * 		new ObjectMarshallingStrategy[] { new SimpleEventMarshallingStrategy(), kieServices.getMarshallers().newSerializeMarshallingStrategy() });
+ * </pre>
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class SimpleEventMarshallingStrategy implements ObjectMarshallingStrategy {
+
+	private static final int INITIAL_BUFFER_SIZE = 32;
+
+	@Override
+	public boolean accept(Object object) {
+		return object != null && object.getClass() == SimpleEvent.class;
+	}
+
+	@Override
+	public void write(ObjectOutputStream os, Object object) throws IOException {
+		new SimpleEventCodec().write(os, (SimpleEvent) object);
+	}
+
+	@Override
+	public Object read(ObjectInputStream os) throws IOException, ClassNotFoundException {
+		return new SimpleEventCodec().read(os);
+	}
+
+	@Override
+	public byte[] marshal(Context context, ObjectOutputStream os, Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+		DataOutputStream out = new DataOutputStream(bytes);
+		((SimpleEventCodecContext) context).getCodec().write(out, (SimpleEvent) object);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Object unmarshal(Context context, ObjectInputStream is, byte[] object, ClassLoader classloader) throws IOException,
+			ClassNotFoundException {
+		return ((SimpleEventCodecContext) context).getCodec().read(new DataInputStream(new ByteArrayInputStream(object)));
+	}
+
+	@Override
+	public Context createContext() {
+		return new SimpleEventCodecContext();
+	}
+
+	/**
+	 * Holds the {@link CodeDictionary} of a single marshalling or unmarshalling run.
+	 */
+	private static class SimpleEventCodecContext implements Context {
+
+		private final CodeDictionary dictionary = new CodeDictionary();
+
+		private final SimpleEventCodec codec = new SimpleEventCodec(dictionary, false);
+
+		public SimpleEventCodec getCodec() {
+			return codec;
+		}
+
+		@Override
+		public void read(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+			dictionary.readFrom(ois);
+		}
+
+		@Override
+		public void write(ObjectOutputStream oos) throws IOException {
+			dictionary.writeTo(oos);
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable length (LEB128) encoding of <code>int</code> and <code>long</code> values. Signed values are zig-zag encoded, so small negative
+ * values stay small.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public final class VarInts {
+
+	private VarInts() {
+	}
+
+	public static void writeUnsignedVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	public static long readUnsignedVarLong(DataInput in) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte nextByte;
+		do {
+			if (shift > 63) {
+				throw new IOException("Malformed variable length long.");
+			}
+			nextByte = in.readByte();
+			value |= (long) (nextByte & 0x7F) << shift;
+			shift += 7;
+		} while ((nextByte & 0x80) != 0);
+		return value;
+	}
+
+	public static void writeVarLong(DataOutput out, long value) throws IOException {
+		writeUnsignedVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	public static long readVarLong(DataInput in) throws IOException {
+		long zigZag = readUnsignedVarLong(in);
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+
+	public static void writeUnsignedVarInt(DataOutput out, int value) throws IOException {
+		writeUnsignedVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	public static int readUnsignedVarInt(DataInput in) throws IOException {
+		long value = readUnsignedVarLong(in);
+		if ((value & ~0xFFFFFFFFL) != 0) {
+			throw new IOException("Malformed variable length int.");
+		}
+		return (int) value;
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.jboss.ddoyle.drools.demo.footprint;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.ddoyle.drools.demo.update.RuleDiff;
+import org.jboss.ddoyle.drools.demo.update.RuleFingerprint;
+
+/**
+ * Memory footprint of a {@link org.kie.api.runtime.KieSession}, per rule and per node, as estimated by the
+ * {@link MemoryFootprintEstimator}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class FootprintReport {
+
+	private final Map<String, RuleFootprint> rules;
+
+	private final Map<Integer, NodeFootprint> nodes;
+
+	private final long factCount;
+
+	private final long estimatedFactBytes;
+
+	FootprintReport(Map<String, RuleFootprint> rules, Map<Integer, NodeFootprint> nodes, long factCount, long estimatedFactBytes) {
+		this.rules = rules;
+		this.nodes = nodes;
+		this.factCount = factCount;
+		this.estimatedFactBytes = estimatedFactBytes;
+	}
+
+	/**
+	 * @return the footprint of every rule, keyed by rule id in the '<code>package-name</code>' format.
+	 */
+	public Map<String, RuleFootprint> getRules() {
+		return Collections.unmodifiableMap(rules);
+	}
+
+	/**
+	 * @return the footprint of every node with a memory, keyed by node id.
+	 */
+	public Map<Integer, NodeFootprint> getNodes() {
+		return Collections.unmodifiableMap(nodes);
+	}
+
+	public long getFactCount() {
+		return factCount;
+	}
+
+	/**
+	 * @return the estimated bytes retained by the fact handles of the session, excluding the facts themselves.
+	 */
+	public long getEstimatedFactBytes() {
+		return estimatedFactBytes;
+	}
+
+	/**
+	 * @return the estimated bytes retained by all node memories, counting shared nodes once.
+	 */
+	public long getEstimatedNodeBytes() {
+		long estimatedBytes = 0;
+		for (NodeFootprint nextNode : nodes.values()) {
+			estimatedBytes += nextNode.getEstimatedBytes();
+		}
+		return estimatedBytes;
+	}
+
+	public long getEstimatedBytes() {
+		return getEstimatedNodeBytes() + estimatedFactBytes;
+	}
+
+	/**
+	 * Predicts the memory an update with the given rule level diff (see {@link org.jboss.ddoyle.drools.demo.update.IncrementalKieJarBuilder})
+	 * adds and frees.
+	 * <p/>
+	 * Drools removes the removed, changed and moved rules, and adds the added, changed and moved rules. The freed memory are the nodes of
+	 * which all rules are removed. Nodes that are shared with a rule that stays are neither freed nor rebuilt, as the rebuilt rules share
+	 * them again. So the changed and moved rules are expected to rebuild only their freed nodes, with their current footprint, as they match
+	 * the same facts. The footprint of an added rule can't be known before it is built, so the average footprint of the current rules is
+	 * used.
+	 */
+	public FootprintDelta predictDelta(RuleDiff ruleDiff) {
+		Set<String> removedRuleIds = new HashSet<>();
+		Set<String> rebuiltRuleIds = new HashSet<>();
+		addRuleIds(ruleDiff.getRemovedRules(), removedRuleIds);
+		addRuleIds(ruleDiff.getChangedRules(), rebuiltRuleIds);
+		addRuleIds(ruleDiff.getMovedRules(), rebuiltRuleIds);
+		removedRuleIds.addAll(rebuiltRuleIds);
+
+		long freedBytes = 0;
+		long addedBytes = 0;
+		for (NodeFootprint nextNode : nodes.values()) {
+			if (removedRuleIds.containsAll(nextNode.getRuleIds())) {
+				freedBytes += nextNode.getEstimatedBytes();
+				if (!Collections.disjoint(rebuiltRuleIds, nextNode.getRuleIds())) {
+					addedBytes += nextNode.getEstimatedBytes();
+				}
+			}
+		}
+		if (!rules.isEmpty()) {
+			long averageRuleBytes = getEstimatedNodeBytes() / rules.size();
+			addedBytes += averageRuleBytes * ruleDiff.getAddedRules().size();
+		}
+		return new FootprintDelta(addedBytes, freedBytes);
+	}
+
+	private static void addRuleIds(Iterable<RuleFingerprint> fingerprints, Set<String> ruleIds) {
+		for (RuleFingerprint nextFingerprint : fingerprints) {
+			ruleIds.add(nextFingerprint.getRuleId());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FootprintReport [rules=" + rules.values() + ", facts=" + factCount + ", estimatedBytes=" + getEstimatedBytes() + "]";
+	}
+
+	/**
+	 * The memory an update is predicted to add and free.
+	 */
+	public static class FootprintDelta {
+
+		private final long addedBytes;
+
+		private final long freedBytes;
+
+		FootprintDelta(long addedBytes, long freedBytes) {
+			this.addedBytes = addedBytes;
+			this.freedBytes = freedBytes;
+		}
+
+		public long getAddedBytes() {
+			return addedBytes;
+		}
+
+		public long getFreedBytes() {
+			return freedBytes;
+		}
+
+		public long getNetBytes() {
+			return addedBytes - freedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return "FootprintDelta [addedBytes=" + addedBytes + ", freedBytes=" + freedBytes + "]";
+		}
+	}
+
+}
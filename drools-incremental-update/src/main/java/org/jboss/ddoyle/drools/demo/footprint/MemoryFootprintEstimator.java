@@ -0,0 +1,156 @@
+package org.jboss.ddoyle.drools.demo.footprint;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.core.common.BaseNode;
+import org.drools.core.common.InternalWorkingMemory;
+import org.drools.core.common.Memory;
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.core.reteoo.AccumulateNode.AccumulateMemory;
+import org.drools.core.reteoo.BetaMemory;
+import org.drools.core.reteoo.BetaNode;
+import org.drools.core.reteoo.LeftTupleSource;
+import org.drools.core.reteoo.RightInputAdapterNode;
+import org.drools.core.reteoo.TerminalNode;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Estimates the memory retained by the node memories of a live {@link KieSession}, per rule and per node.
+ * <p/>
+ * The network of every rule is walked from its terminal nodes up to the left input adapters, including the sub-networks of
+ * <code>not</code>, <code>exists</code> and <code>accumulate</code> nodes. The tuples in the left and right memories of the beta nodes
+ * (joins, <code>not</code> nodes, accumulate nodes, etc.) are counted and multiplied by an estimated size per tuple. Accumulate nodes also
+ * retain an accumulate context per left tuple. Alpha nodes have no memory in the Phreak algorithm. Node memories that have not been created
+ * yet (i.e. of rules that have never been evaluated) are not created by the estimator.
+ * <p/>
+ * The default sizes are rough estimates for a 64-bit JVM with compressed oops, which don't include the facts themselves.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class MemoryFootprintEstimator {
+
+	public static final long DEFAULT_LEFT_TUPLE_BYTES = 96;
+
+	public static final long DEFAULT_RIGHT_TUPLE_BYTES = 80;
+
+	public static final long DEFAULT_ACCUMULATE_CONTEXT_BYTES = 64;
+
+	public static final long DEFAULT_FACT_HANDLE_BYTES = 120;
+
+	private final long leftTupleBytes;
+
+	private final long rightTupleBytes;
+
+	private final long accumulateContextBytes;
+
+	private final long factHandleBytes;
+
+	public MemoryFootprintEstimator() {
+		this(DEFAULT_LEFT_TUPLE_BYTES, DEFAULT_RIGHT_TUPLE_BYTES, DEFAULT_ACCUMULATE_CONTEXT_BYTES, DEFAULT_FACT_HANDLE_BYTES);
+	}
+
+	public MemoryFootprintEstimator(long leftTupleBytes, long rightTupleBytes, long accumulateContextBytes, long factHandleBytes) {
+		this.leftTupleBytes = leftTupleBytes;
+		this.rightTupleBytes = rightTupleBytes;
+		this.accumulateContextBytes = accumulateContextBytes;
+		this.factHandleBytes = factHandleBytes;
+	}
+
+	/**
+	 * Estimates the footprint of the given session. Must be called from the thread that owns the session, as the node memories are not
+	 * thread-safe.
+	 */
+	public FootprintReport estimate(KieSession kieSession) {
+		InternalWorkingMemory workingMemory = (InternalWorkingMemory) kieSession;
+		InternalKnowledgeBase kieBase = workingMemory.getKnowledgeBase();
+
+		Map<String, RuleFootprint> rules = new HashMap<>();
+		Map<Integer, NodeFootprint> nodes = new HashMap<>();
+		for (KiePackage nextPackage : kieBase.getKiePackages()) {
+			for (Rule nextRule : nextPackage.getRules()) {
+				String ruleId = nextRule.getPackageName() + "-" + nextRule.getName();
+				RuleFootprint ruleFootprint = new RuleFootprint(ruleId);
+				BaseNode[] terminalNodes = kieBase.getReteooBuilder().getTerminalNodes((RuleImpl) nextRule);
+				if (terminalNodes != null) {
+					for (NodeFootprint nextNode : walk(workingMemory, terminalNodes, nodes)) {
+						nextNode.addRuleId(ruleId);
+						ruleFootprint.addNode(nextNode);
+					}
+				}
+				rules.put(ruleId, ruleFootprint);
+			}
+		}
+		long factCount = kieSession.getFactCount();
+		return new FootprintReport(rules, nodes, factCount, factCount * factHandleBytes);
+	}
+
+	/**
+	 * Walks the network of a rule from its terminal nodes.
+	 *
+	 * @return the footprints of the nodes of the rule that have a memory.
+	 */
+	private Set<NodeFootprint> walk(InternalWorkingMemory workingMemory, BaseNode[] terminalNodes, Map<Integer, NodeFootprint> nodes) {
+		Set<NodeFootprint> ruleNodes = new HashSet<>();
+		Set<Integer> visited = new HashSet<>();
+		Deque<LeftTupleSource> toVisit = new ArrayDeque<>();
+		for (BaseNode nextTerminalNode : terminalNodes) {
+			push(toVisit, ((TerminalNode) nextTerminalNode).getLeftTupleSource());
+		}
+		while (!toVisit.isEmpty()) {
+			LeftTupleSource node = toVisit.pop();
+			if (!visited.add(node.getId())) {
+				continue;
+			}
+			if (node instanceof BetaNode) {
+				NodeFootprint nodeFootprint = getNodeFootprint(workingMemory, (BetaNode) node, nodes);
+				if (nodeFootprint != null) {
+					ruleNodes.add(nodeFootprint);
+				}
+				if (((BetaNode) node).getRightInput() instanceof RightInputAdapterNode) {
+					push(toVisit, ((RightInputAdapterNode) ((BetaNode) node).getRightInput()).getLeftTupleSource());
+				}
+			}
+			push(toVisit, node.getLeftTupleSource());
+		}
+		return ruleNodes;
+	}
+
+	private static void push(Deque<LeftTupleSource> toVisit, LeftTupleSource node) {
+		if (node != null) {
+			toVisit.push(node);
+		}
+	}
+
+	private NodeFootprint getNodeFootprint(InternalWorkingMemory workingMemory, BetaNode node, Map<Integer, NodeFootprint> nodes) {
+		NodeFootprint nodeFootprint = nodes.get(node.getId());
+		if (nodeFootprint != null) {
+			return nodeFootprint;
+		}
+		Memory memory = workingMemory.getNodeMemories().peekNodeMemory(node.getId());
+		BetaMemory betaMemory;
+		long contextBytes = 0;
+		if (memory instanceof AccumulateMemory) {
+			betaMemory = ((AccumulateMemory) memory).getBetaMemory();
+			contextBytes = accumulateContextBytes;
+		} else if (memory instanceof BetaMemory) {
+			betaMemory = (BetaMemory) memory;
+		} else {
+			return null;
+		}
+		int leftTuples = betaMemory.getLeftTupleMemory().size();
+		int rightTuples = betaMemory.getRightTupleMemory().size();
+		long estimatedBytes = leftTuples * (leftTupleBytes + contextBytes) + rightTuples * rightTupleBytes;
+		nodeFootprint = new NodeFootprint(node.getId(), node.getClass().getSimpleName(), leftTuples, rightTuples, estimatedBytes);
+		nodes.put(node.getId(), nodeFootprint);
+		return nodeFootprint;
+	}
+
+}
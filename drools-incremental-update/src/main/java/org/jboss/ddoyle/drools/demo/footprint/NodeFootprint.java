@@ -0,0 +1,74 @@
+package org.jboss.ddoyle.drools.demo.footprint;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tuple counts and estimated retained bytes of the memory of a single network node.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class NodeFootprint {
+
+	private final int nodeId;
+
+	private final String nodeType;
+
+	private final int leftTuples;
+
+	private final int rightTuples;
+
+	private final long estimatedBytes;
+
+	private final Set<String> ruleIds = new TreeSet<>();
+
+	NodeFootprint(int nodeId, String nodeType, int leftTuples, int rightTuples, long estimatedBytes) {
+		this.nodeId = nodeId;
+		this.nodeType = nodeType;
+		this.leftTuples = leftTuples;
+		this.rightTuples = rightTuples;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	void addRuleId(String ruleId) {
+		ruleIds.add(ruleId);
+	}
+
+	public int getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * @return the simple class name of the node, e.g. <code>NotNode</code> or <code>AccumulateNode</code>.
+	 */
+	public String getNodeType() {
+		return nodeType;
+	}
+
+	public int getLeftTuples() {
+		return leftTuples;
+	}
+
+	public int getRightTuples() {
+		return rightTuples;
+	}
+
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	/**
+	 * @return the ids of the rules that share this node, in the '<code>package-name</code>' format.
+	 */
+	public Set<String> getRuleIds() {
+		return Collections.unmodifiableSet(ruleIds);
+	}
+
+	@Override
+	public String toString() {
+		return "NodeFootprint [nodeId=" + nodeId + ", nodeType=" + nodeType + ", leftTuples=" + leftTuples + ", rightTuples=" + rightTuples
+				+ ", estimatedBytes=" + estimatedBytes + ", rules=" + ruleIds + "]";
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.jboss.ddoyle.drools.demo.footprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The memory footprint of a rule, i.e. of all the node memories of the rule's network. Nodes that are shared with other rules count for
+ * every rule that uses them.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class RuleFootprint {
+
+	private final String ruleId;
+
+	private final List<NodeFootprint> nodes = new ArrayList<>();
+
+	private int leftTuples;
+
+	private int rightTuples;
+
+	private long estimatedBytes;
+
+	RuleFootprint(String ruleId) {
+		this.ruleId = ruleId;
+	}
+
+	void addNode(NodeFootprint node) {
+		nodes.add(node);
+		leftTuples += node.getLeftTuples();
+		rightTuples += node.getRightTuples();
+		estimatedBytes += node.getEstimatedBytes();
+	}
+
+	/**
+	 * @return the id of the rule in the '<code>package-name</code>' format.
+	 */
+	public String getRuleId() {
+		return ruleId;
+	}
+
+	public List<NodeFootprint> getNodes() {
+		return Collections.unmodifiableList(nodes);
+	}
+
+	public int getLeftTuples() {
+		return leftTuples;
+	}
+
+	public int getRightTuples() {
+		return rightTuples;
+	}
+
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "RuleFootprint [ruleId=" + ruleId + ", nodes=" + nodes.size() + ", leftTuples=" + leftTuples + ", rightTuples=" + rightTuples
+				+ ", estimatedBytes=" + estimatedBytes + "]";
+	}
+
+}
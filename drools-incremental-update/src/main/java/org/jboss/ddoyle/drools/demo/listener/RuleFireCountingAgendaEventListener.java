@@ -0,0 +1,146 @@
+package org.jboss.ddoyle.drools.demo.listener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+
+/**
+ * Counts the number of times each rule fires, without locking and without building strings when a rule fires.
+ * <p/>
+ * The counters are keyed on the {@link Rule} itself, of which the package and name based hashCode is computed by the engine. The rule id
+ * (<code>package-name</code>) is only built once per rule, when the rule fires for the first time.
+ * <p/>
+ * A session fires its rules on a single thread, so by default every counter is a single slot. When a listener is shared by sessions that
+ * fire on different threads, the counters can be striped over a number of cache line padded slots, selected on the id of the firing
+ * thread, so these threads don't contend on a single counter. Every stripe takes a cache line per rule.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class RuleFireCountingAgendaEventListener extends DefaultAgendaEventListener {
+
+	private final ConcurrentMap<Rule, Counter> countersByRule = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Counter> countersByRuleId = new ConcurrentHashMap<>();
+
+	private final int stripes;
+
+	/**
+	 * Creates a listener with a single slot per counter, for sessions that fire their rules on a single thread.
+	 */
+	public RuleFireCountingAgendaEventListener() {
+		this(1);
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of slots per counter, rounded up to a power of two. Should be about the number of threads that fire rules
+	 *            concurrently.
+	 */
+	public RuleFireCountingAgendaEventListener(int stripes) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("Number of stripes must be positive: " + stripes);
+		}
+		this.stripes = nextPowerOfTwo(stripes);
+	}
+
+	@Override
+	public void afterMatchFired(AfterMatchFiredEvent event) {
+		Rule rule = event.getMatch().getRule();
+		Counter counter = countersByRule.get(rule);
+		if (counter == null) {
+			counter = getOrCreateCounter(rule);
+		}
+		counter.increment();
+	}
+
+	private Counter getOrCreateCounter(Rule rule) {
+		String ruleId = rule.getPackageName() + "-" + rule.getName();
+		Counter counter = countersByRuleId.get(ruleId);
+		if (counter == null) {
+			Counter newCounter = new Counter(stripes);
+			counter = countersByRuleId.putIfAbsent(ruleId, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		// Rules with the same id share a counter, also when the rule is replaced by an incremental update.
+		Counter existingCounter = countersByRule.putIfAbsent(rule, counter);
+		return (existingCounter == null) ? counter : existingCounter;
+	}
+
+	/**
+	 * @param ruleId
+	 *            the id of the rule in the '<code>package-name</code>' format.
+	 * @return the number of times the rule has fired.
+	 */
+	public long getFireCount(String ruleId) {
+		Counter counter = countersByRuleId.get(ruleId);
+		return (counter == null) ? 0 : counter.sum();
+	}
+
+	/**
+	 * @return the number of times each rule has fired, keyed by rule id in the '<code>package-name</code>' format. The snapshot is not
+	 *         atomic over all rules, but it is consistent per rule.
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new HashMap<>(countersByRuleId.size() * 2);
+		for (Map.Entry<String, Counter> nextCounter : countersByRuleId.entrySet()) {
+			snapshot.put(nextCounter.getKey(), nextCounter.getValue().sum());
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	/**
+	 * Resets all counters. This also releases the {@link Rule} instances of previous KieBase versions that the counters are keyed on.
+	 */
+	public void reset() {
+		countersByRule.clear();
+		countersByRuleId.clear();
+	}
+
+	private static int nextPowerOfTwo(int value) {
+		int powerOfTwo = 1;
+		while (powerOfTwo < value) {
+			powerOfTwo <<= 1;
+		}
+		return powerOfTwo;
+	}
+
+	/**
+	 * Counter striped over a number of slots. Every slot is a cache line (8 longs) apart from the next one to prevent false sharing.
+	 */
+	private static class Counter {
+
+		private static final int PADDING = 8;
+
+		private final int stripeMask;
+
+		private final AtomicLongArray slots;
+
+		private Counter(int stripes) {
+			this.stripeMask = stripes - 1;
+			this.slots = new AtomicLongArray((stripes - 1) * PADDING + 1);
+		}
+
+		private void increment() {
+			int stripe = (int) (Thread.currentThread().getId() & stripeMask);
+			slots.incrementAndGet(stripe * PADDING);
+		}
+
+		private long sum() {
+			long sum = 0;
+			for (int stripe = 0; stripe <= stripeMask; stripe++) {
+				sum += slots.get(stripe * PADDING);
+			}
+			return sum;
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.jboss.ddoyle.drools.demo.metrics;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Named latency histograms, recorded in nanoseconds. The histograms can be queried in process, and exported to a file in the HdrHistogram
+ * percentile distribution format.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LatencyRecorder {
+
+	private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	private final long highestTrackableValueNanos;
+
+	private final int numberOfSignificantValueDigits;
+
+	/**
+	 * Creates a recorder which tracks latencies up to 1 hour with 3 significant digits.
+	 */
+	public LatencyRecorder() {
+		this(TimeUnit.HOURS.toNanos(1), 3);
+	}
+
+	public LatencyRecorder(long highestTrackableValueNanos, int numberOfSignificantValueDigits) {
+		this.highestTrackableValueNanos = highestTrackableValueNanos;
+		this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+	}
+
+	/**
+	 * Records a latency. Latencies above the highest trackable value are recorded as the highest trackable value.
+	 */
+	public void record(String name, long latencyNanos) {
+		record(getOrCreateHistogram(name), latencyNanos);
+	}
+
+	/**
+	 * Records a latency in a histogram obtained with {@link #getOrCreateHistogram(String)}, which saves the lookup on hot paths.
+	 */
+	public void record(Histogram histogram, long latencyNanos) {
+		histogram.recordValue(Math.max(0, Math.min(latencyNanos, highestTrackableValueNanos)));
+	}
+
+	/**
+	 * @return the live histogram with the given name, created if it doesn't exist yet.
+	 */
+	public Histogram getOrCreateHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new ConcurrentHistogram(highestTrackableValueNanos, numberOfSignificantValueDigits);
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return a copy of the histogram with the given name, or <code>null</code> if nothing has been recorded under that name.
+	 */
+	public Histogram getHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		return (histogram == null) ? null : histogram.copy();
+	}
+
+	/**
+	 * @return copies of all histograms, sorted on name.
+	 */
+	public SortedMap<String, Histogram> getHistograms() {
+		SortedMap<String, Histogram> copies = new TreeMap<>();
+		for (Map.Entry<String, Histogram> nextHistogram : histograms.entrySet()) {
+			copies.put(nextHistogram.getKey(), nextHistogram.getValue().copy());
+		}
+		return copies;
+	}
+
+	/**
+	 * Resets all histograms.
+	 */
+	public void reset() {
+		for (Histogram nextHistogram : histograms.values()) {
+			nextHistogram.reset();
+		}
+	}
+
+	/**
+	 * Writes the percentile distribution of every histogram, in microseconds, to the given file.
+	 */
+	public void exportTo(File file) throws FileNotFoundException {
+		try (PrintStream out = new PrintStream(file)) {
+			for (Map.Entry<String, Histogram> nextHistogram : getHistograms().entrySet()) {
+				out.println("# " + nextHistogram.getKey());
+				nextHistogram.getValue().outputPercentileDistribution(out, NANOS_PER_MICRO);
+				out.println();
+			}
+		}
+	}
+
+}
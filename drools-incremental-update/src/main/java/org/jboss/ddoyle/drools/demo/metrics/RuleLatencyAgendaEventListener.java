@@ -0,0 +1,53 @@
+package org.jboss.ddoyle.drools.demo.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.HdrHistogram.Histogram;
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+
+/**
+ * Records the latency of every rule consequence in the histogram '<code>rule.package-name</code>' of a {@link LatencyRecorder}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class RuleLatencyAgendaEventListener extends DefaultAgendaEventListener {
+
+	public static final String RULE_PREFIX = "rule.";
+
+	private final LatencyRecorder latencyRecorder;
+
+	private final ConcurrentMap<Rule, Histogram> histograms = new ConcurrentHashMap<>();
+
+	private final ThreadLocal<long[]> startTimes = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	public RuleLatencyAgendaEventListener(LatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+	}
+
+	@Override
+	public void beforeMatchFired(BeforeMatchFiredEvent event) {
+		startTimes.get()[0] = System.nanoTime();
+	}
+
+	@Override
+	public void afterMatchFired(AfterMatchFiredEvent event) {
+		long latency = System.nanoTime() - startTimes.get()[0];
+		Rule rule = event.getMatch().getRule();
+		Histogram histogram = histograms.get(rule);
+		if (histogram == null) {
+			histogram = latencyRecorder.getOrCreateHistogram(RULE_PREFIX + rule.getPackageName() + "-" + rule.getName());
+			histograms.putIfAbsent(rule, histogram);
+		}
+		latencyRecorder.record(histogram, latency);
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.jboss.ddoyle.drools.demo.metrics;
+
+import java.util.Map;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.update.IncrementalKieJarBuilder;
+import org.kie.api.KieServices;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Runs the phases of a rule update and records the latency of each phase in a {@link LatencyRecorder}:
+ * <ul>
+ * <li>{@value #LAYOUT_PHASE}: reading, parsing and fingerprinting the resources of the KJAR.</li>
+ * <li>{@value #RULE_DIFF_PHASE}: computing the builder's rule level diff of the KJAR against the previous version.</li>
+ * <li>{@value #COMPILE_PHASE}: compiling the changed resources of the KJAR.</li>
+ * <li>{@value #UPDATE_TO_VERSION_PHASE}: {@link KieContainer#updateToVersion(ReleaseId)}, in which Drools diffs the old and new KieModule,
+ * compiles the changed resources again against the live KieBase and adds and removes the network nodes. Drools 6.2 runs these steps in
+ * a single call without any callback in between, so they can't be timed separately from outside the engine.</li>
+ * <li>{@value #PROPAGATION_PHASE}: the first {@link KieSession#fireAllRules()} after the update, in which the facts in the session are
+ * propagated through the new nodes.</li>
+ * </ul>
+ * Every {@link KieSession#fireAllRules()} run through this tracer is recorded as {@value #FIRE_ALL_RULES}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class UpdatePhaseTracer {
+
+	public static final String LAYOUT_PHASE = "update.layout";
+
+	public static final String RULE_DIFF_PHASE = "update.ruleDiff";
+
+	public static final String COMPILE_PHASE = "update.compile";
+
+	public static final String UPDATE_TO_VERSION_PHASE = "update.updateToVersion";
+
+	public static final String PROPAGATION_PHASE = "update.propagation";
+
+	public static final String FIRE_ALL_RULES = "session.fireAllRules";
+
+	private final LatencyRecorder latencyRecorder;
+
+	public UpdatePhaseTracer(LatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+	}
+
+	/**
+	 * Builds the next version of the KJAR with the given builder.
+	 */
+	public InternalKieModule build(IncrementalKieJarBuilder kieJarBuilder, ReleaseId releaseId, Map<String, Resource> resources) {
+		InternalKieModule kieModule = kieJarBuilder.build(releaseId, resources);
+		latencyRecorder.record(LAYOUT_PHASE, kieJarBuilder.getLastLayoutNanos());
+		latencyRecorder.record(RULE_DIFF_PHASE, kieJarBuilder.getLastDiffNanos());
+		latencyRecorder.record(COMPILE_PHASE, kieJarBuilder.getLastCompileNanos());
+		return kieModule;
+	}
+
+	/**
+	 * Deploys the given KJAR, updates the {@link KieContainer} to it and fires the rules of the given sessions to propagate their facts
+	 * through the new nodes.
+	 *
+	 * @return the results of the update. When the update has errors, the sessions are not fired.
+	 */
+	public Results update(KieServices kieServices, KieContainer kieContainer, InternalKieModule kieModule, KieSession... kieSessions) {
+		kieServices.getRepository().addKieModule(kieModule);
+
+		long startTime = System.nanoTime();
+		Results results = kieContainer.updateToVersion(kieModule.getReleaseId());
+		latencyRecorder.record(UPDATE_TO_VERSION_PHASE, System.nanoTime() - startTime);
+
+		if (!results.getMessages(Message.Level.ERROR).isEmpty()) {
+			return results;
+		}
+		for (KieSession nextKieSession : kieSessions) {
+			long propagationStartTime = System.nanoTime();
+			fireAllRules(nextKieSession);
+			latencyRecorder.record(PROPAGATION_PHASE, System.nanoTime() - propagationStartTime);
+		}
+		return results;
+	}
+
+	/**
+	 * Fires the rules of the given session.
+	 *
+	 * @return the number of rules fired.
+	 */
+	public int fireAllRules(KieSession kieSession) {
+		long startTime = System.nanoTime();
+		int rulesFired = kieSession.fireAllRules();
+		latencyRecorder.record(FIRE_ALL_RULES, System.nanoTime() - startTime);
+		return rulesFired;
+	}
+
+}
@@ -0,0 +1,26 @@
+package org.jboss.ddoyle.drools.demo.model.v1;
+
+/**
+ * Static helpers for {@link Event Events}.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public final class Events {
+
+	private Events() {
+	}
+
+	/**
+	 * Returns the timestamp of the given {@link Event}, without allocating a {@link java.util.Date} when the event is a
+	 * {@link TimestampMillisEvent}.
+	 * 
+	 * @return the timestamp of the event in milliseconds since the epoch.
+	 */
+	public static long getTimestampMillis(Event event) {
+		if (event instanceof TimestampMillisEvent) {
+			return ((TimestampMillisEvent) event).getTimestampMillis();
+		}
+		return event.getTimestamp().getTime();
+	}
+
+}
@@ -7,7 +7,7 @@ import java.util.UUID;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
-public class SimpleEvent implements Event {
+public class SimpleEvent implements TimestampMillisEvent {
 	
 	private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd:HHmmssSSS");
 	
@@ -29,9 +29,14 @@ public class SimpleEvent implements Event {
 	}
 	
 	public SimpleEvent(final String eventId, final String code, final Date eventTimestamp) {
+		this(eventId, code, eventTimestamp.getTime());
+	}
+	
+	public SimpleEvent(final String eventId, final String code, final long eventTimestamp) {
 		this.id = eventId;
-		this.code = code;
-		this.timestamp = eventTimestamp.getTime();
+		// Events share a small set of codes, so intern them instead of keeping a copy per event.
+		this.code = (code == null) ? null : code.intern();
+		this.timestamp = eventTimestamp;
 	}
 	
 	public String getId() {
@@ -46,6 +51,31 @@ public class SimpleEvent implements Event {
 		return new Date(timestamp);
 	}
 
+	public long getTimestampMillis() {
+		return timestamp;
+	}
+
+	/**
+	 * Events are equal when they have the same id, so a KieBase with <code>EqualityBehaviorOption.EQUALITY</code> suppresses duplicate
+	 * inserts of the same event. The hash is the hash of the id, which {@link String} computes once and caches. Events without an id are
+	 * only equal to themselves.
+	 */
+	@Override
+	public int hashCode() {
+		return (id == null) ? System.identityHashCode(this) : id.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (id == null || obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		return id.equals(((SimpleEvent) obj).id);
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this).append("id", id).append("timestamp", DATE_FORMAT.format(timestamp)).toString();
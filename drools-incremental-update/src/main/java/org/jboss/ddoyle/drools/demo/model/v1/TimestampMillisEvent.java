@@ -0,0 +1,16 @@
+package org.jboss.ddoyle.drools.demo.model.v1;
+
+/**
+ * {@link Event} which exposes its timestamp as a primitive <code>long</code>, so the timestamp can be read without allocating a
+ * {@link java.util.Date}. Rules should bind their <code>@timestamp</code> to this accessor, i.e. <code>@timestamp( timestampMillis )</code>.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public interface TimestampMillisEvent extends Event {
+
+	/**
+	 * @return the timestamp of this event in milliseconds since the epoch.
+	 */
+	public abstract long getTimestampMillis();
+
+}
@@ -0,0 +1,106 @@
+package org.jboss.ddoyle.drools.demo.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.core.base.ClassObjectType;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.core.reteoo.AlphaNode;
+import org.drools.core.reteoo.CompositeObjectSinkAdapter;
+import org.drools.core.reteoo.ObjectSink;
+import org.drools.core.reteoo.ObjectSinkPropagator;
+import org.drools.core.reteoo.ObjectTypeNode;
+import org.drools.core.spi.ObjectType;
+import org.kie.api.KieBase;
+
+/**
+ * Reports how the alpha nodes directly below the {@link ObjectTypeNode} of a fact type are indexed.
+ * <p/>
+ * Drools hashes the alpha nodes of literal equality constraints on the same field, e.g. <code>SimpleEvent(code=="MY_CODE")</code>, as soon
+ * as there are at least <code>drools.alphaNodeHashingThreshold</code> (default 3) of them. A fact is then propagated to the alpha node of
+ * its value with a single hash lookup, independent of the number of rules. When a rule is added, removed or changed by an update, only its
+ * alpha node is added to or removed from the hash index, the alpha nodes of the other rules are not rebuilt. The threshold can be set with
+ * the <code>drools.alphaNodeHashingThreshold</code> system property.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class AlphaNetworkInspector {
+
+	/**
+	 * @return the index of the alpha nodes of the given fact type, or <code>null</code> if the KieBase has no rules on the fact type.
+	 */
+	public AlphaNodeIndex inspect(KieBase kieBase, Class<?> factType) {
+		Map<ObjectType, ObjectTypeNode> objectTypeNodes = ((InternalKnowledgeBase) kieBase).getRete().getObjectTypeNodes();
+		for (Map.Entry<ObjectType, ObjectTypeNode> nextObjectTypeNode : objectTypeNodes.entrySet()) {
+			ObjectType objectType = nextObjectTypeNode.getKey();
+			if (objectType instanceof ClassObjectType && ((ClassObjectType) objectType).getClassType() == factType) {
+				return inspect(nextObjectTypeNode.getValue().getObjectSinkPropagator());
+			}
+		}
+		return null;
+	}
+
+	private AlphaNodeIndex inspect(ObjectSinkPropagator propagator) {
+		List<AlphaNode> alphaNodes = new ArrayList<>();
+		for (ObjectSink nextSink : propagator.getSinks()) {
+			if (nextSink instanceof AlphaNode) {
+				alphaNodes.add((AlphaNode) nextSink);
+			}
+		}
+		int hashedAlphaNodes = 0;
+		if (propagator instanceof CompositeObjectSinkAdapter) {
+			CompositeObjectSinkAdapter compositeAdapter = (CompositeObjectSinkAdapter) propagator;
+			if (compositeAdapter.getHashedSinkMap() != null) {
+				hashedAlphaNodes = compositeAdapter.getHashedSinkMap().size();
+			}
+		}
+		return new AlphaNodeIndex(alphaNodes, hashedAlphaNodes);
+	}
+
+	/**
+	 * The alpha nodes directly below an {@link ObjectTypeNode}, and how many of them are hashed.
+	 */
+	public static class AlphaNodeIndex {
+
+		private final List<AlphaNode> alphaNodes;
+
+		private final int hashedAlphaNodes;
+
+		private final int unhashedAlphaNodes;
+
+		private AlphaNodeIndex(List<AlphaNode> alphaNodes, int hashedAlphaNodes) {
+			this.alphaNodes = alphaNodes;
+			this.hashedAlphaNodes = hashedAlphaNodes;
+			this.unhashedAlphaNodes = alphaNodes.size() - hashedAlphaNodes;
+		}
+
+		/**
+		 * @return the alpha nodes, hashed and unhashed.
+		 */
+		public List<AlphaNode> getAlphaNodes() {
+			return Collections.unmodifiableList(alphaNodes);
+		}
+
+		/**
+		 * @return the number of alpha nodes that are found with a hash lookup.
+		 */
+		public int getHashedAlphaNodes() {
+			return hashedAlphaNodes;
+		}
+
+		/**
+		 * @return the number of alpha nodes every fact is evaluated against.
+		 */
+		public int getUnhashedAlphaNodes() {
+			return unhashedAlphaNodes;
+		}
+
+		@Override
+		public String toString() {
+			return "AlphaNodeIndex [hashed=" + hashedAlphaNodes + ", unhashed=" + unhashedAlphaNodes + "]";
+		}
+	}
+
+}
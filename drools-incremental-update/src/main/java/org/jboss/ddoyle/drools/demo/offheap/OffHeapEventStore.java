@@ -0,0 +1,278 @@
+package org.jboss.ddoyle.drools.demo.offheap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.jboss.ddoyle.drools.demo.codec.CodeDictionary;
+import org.jboss.ddoyle.drools.demo.codec.SimpleEventCodec;
+
+/**
+ * Stores the payload of events (id, code and timestamp) outside of the Java heap, in direct or memory-mapped buffers, and hands out
+ * {@link OffHeapSimpleEvent} flyweights that read their payload from this store.
+ * <p/>
+ * Every event is a fixed size record of {@value #RECORD_SIZE} bytes: the timestamp, the index of the code in a {@link CodeDictionary},
+ * and the id as a number or a UUID. Ids that are neither (see {@link SimpleEventCodec#isNumericId(String)} and
+ * {@link SimpleEventCodec#isCanonicalUuid(String)}) are kept on the heap. The records are stored in segments of {@value #SEGMENT_RECORDS}
+ * records, so the store isn't limited by the 2GB size limit of a single buffer.
+ * <p/>
+ * Events are released per segment with {@link #releaseBefore(long)}, once all events of the segment have expired from the sessions they
+ * were inserted in. This keeps the memory of a store bounded to a sliding window of events, e.g. the 2 day <code>@expires</code> window of the
+ * rules, plus a segment. The flyweight of a released event can't be read anymore.
+ * <p/>
+ * Like a {@link org.kie.api.runtime.KieSession}, this store is not thread-safe. The segments, codes and heap ids are unsynchronized, so
+ * the events should be appended, read and released by the thread that works the session the flyweights are inserted in.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class OffHeapEventStore implements Closeable {
+
+	public static final int RECORD_SIZE = 32;
+
+	public static final int SEGMENT_RECORDS = 1 << 20;
+
+	private static final int SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_SIZE;
+
+	private static final int TIMESTAMP_OFFSET = 0;
+
+	private static final int CODE_OFFSET = 8;
+
+	private static final int ID_FORM_OFFSET = 12;
+
+	private static final int ID_HIGH_OFFSET = 16;
+
+	private static final int ID_LOW_OFFSET = 24;
+
+	private static final byte ID_NULL = 0;
+
+	private static final byte ID_NUMERIC = 1;
+
+	private static final byte ID_UUID = 2;
+
+	private static final byte ID_HEAP = 3;
+
+	private static final int NO_CODE = -1;
+
+	private final List<Segment> segments = new ArrayList<>();
+
+	private final CodeDictionary codes = new CodeDictionary();
+
+	private final TreeMap<Integer, String> heapIds = new TreeMap<>();
+
+	private final FileChannel channel;
+
+	private int size;
+
+	private int releasedSegments;
+
+	private OffHeapEventStore(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * @return a store that keeps its records in direct {@link ByteBuffer ByteBuffers}.
+	 */
+	public static OffHeapEventStore allocateDirect() {
+		return new OffHeapEventStore(null);
+	}
+
+	/**
+	 * @return a store that keeps its records in the given file, which is memory-mapped segment by segment. Existing content of the file is
+	 *         overwritten.
+	 */
+	@SuppressWarnings("resource")
+	public static OffHeapEventStore map(File file) throws IOException {
+		return new OffHeapEventStore(new RandomAccessFile(file, "rw").getChannel());
+	}
+
+	/**
+	 * Appends an event to this store.
+	 *
+	 * @return the flyweight of the appended event.
+	 * @throws IllegalStateException
+	 *             if the store is full or a segment can't be mapped.
+	 */
+	public OffHeapSimpleEvent append(String id, String code, long timestamp) {
+		if (size == Integer.MAX_VALUE) {
+			throw new IllegalStateException("Off-heap event store is full.");
+		}
+		int index = size;
+		Segment appendSegment = getSegmentForAppend(index);
+		appendSegment.maxTimestamp = Math.max(appendSegment.maxTimestamp, timestamp);
+		ByteBuffer segment = appendSegment.buffer;
+		int offset = getOffset(index);
+		segment.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+		segment.putInt(offset + CODE_OFFSET, (code == null) ? NO_CODE : codes.add(code));
+		if (id == null) {
+			segment.put(offset + ID_FORM_OFFSET, ID_NULL);
+		} else if (SimpleEventCodec.isNumericId(id)) {
+			segment.put(offset + ID_FORM_OFFSET, ID_NUMERIC);
+			segment.putLong(offset + ID_LOW_OFFSET, Long.parseLong(id));
+		} else if (SimpleEventCodec.isCanonicalUuid(id)) {
+			UUID uuid = UUID.fromString(id);
+			segment.put(offset + ID_FORM_OFFSET, ID_UUID);
+			segment.putLong(offset + ID_HIGH_OFFSET, uuid.getMostSignificantBits());
+			segment.putLong(offset + ID_LOW_OFFSET, uuid.getLeastSignificantBits());
+		} else {
+			segment.put(offset + ID_FORM_OFFSET, ID_HEAP);
+			heapIds.put(index, id);
+		}
+		size++;
+		return new OffHeapSimpleEvent(this, index);
+	}
+
+	/**
+	 * @return the flyweight of the event at the given index.
+	 * @throws IllegalStateException
+	 *             if the event has been released.
+	 */
+	public OffHeapSimpleEvent get(int index) {
+		getSegment(index);
+		return new OffHeapSimpleEvent(this, index);
+	}
+
+	/**
+	 * Releases the leading segments of which all events have a timestamp before the given timestamp, e.g. the session clock minus the
+	 * <code>@expires</code> of the events. Segments are released in append order, so a segment is only released when all segments before it
+	 * are released as well, and the segment that is appended to is never released. Released events keep their index, {@link #size()}
+	 * doesn't change.
+	 * <p/>
+	 * The direct buffer of a released segment is freed when it's garbage collected. The mapping of a released segment of a memory-mapped
+	 * store is also dropped on garbage collection, but the file isn't truncated.
+	 *
+	 * @return the number of events released.
+	 */
+	public int releaseBefore(long timestamp) {
+		int appendSegment = size / SEGMENT_RECORDS;
+		int released = 0;
+		while (releasedSegments < appendSegment && segments.get(releasedSegments).maxTimestamp < timestamp) {
+			segments.set(releasedSegments, null);
+			releasedSegments++;
+			released += SEGMENT_RECORDS;
+		}
+		if (released > 0) {
+			heapIds.headMap(getFirstIndex()).clear();
+		}
+		return released;
+	}
+
+	/**
+	 * @return the number of events appended to this store, including the released events.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the index of the first event that has not been released.
+	 */
+	public int getFirstIndex() {
+		return releasedSegments * SEGMENT_RECORDS;
+	}
+
+	/**
+	 * @return the bytes of the segments that have not been released.
+	 */
+	public long getAllocatedBytes() {
+		return (long) (segments.size() - releasedSegments) * SEGMENT_BYTES;
+	}
+
+	long getTimestampMillis(int index) {
+		return getSegment(index).getLong(getOffset(index) + TIMESTAMP_OFFSET);
+	}
+
+	String getCode(int index) {
+		int codeIndex = getSegment(index).getInt(getOffset(index) + CODE_OFFSET);
+		if (codeIndex == NO_CODE) {
+			return null;
+		}
+		try {
+			return codes.get(codeIndex);
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Corrupt record at index " + index + ".", ioe);
+		}
+	}
+
+	String getId(int index) {
+		ByteBuffer segment = getSegment(index);
+		int offset = getOffset(index);
+		switch (segment.get(offset + ID_FORM_OFFSET)) {
+		case ID_NULL:
+			return null;
+		case ID_NUMERIC:
+			return Long.toString(segment.getLong(offset + ID_LOW_OFFSET));
+		case ID_UUID:
+			return new UUID(segment.getLong(offset + ID_HIGH_OFFSET), segment.getLong(offset + ID_LOW_OFFSET)).toString();
+		case ID_HEAP:
+			return heapIds.get(index);
+		default:
+			throw new IllegalStateException("Corrupt record at index " + index + ".");
+		}
+	}
+
+	private ByteBuffer getSegment(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		Segment segment = segments.get(index / SEGMENT_RECORDS);
+		if (segment == null) {
+			throw new IllegalStateException("Event at index " + index + " has been released.");
+		}
+		return segment.buffer;
+	}
+
+	private Segment getSegmentForAppend(int index) {
+		int segmentIndex = index / SEGMENT_RECORDS;
+		if (segmentIndex == segments.size()) {
+			segments.add(new Segment(newSegment(segmentIndex)));
+		}
+		return segments.get(segmentIndex);
+	}
+
+	private ByteBuffer newSegment(int segmentIndex) {
+		if (channel == null) {
+			return ByteBuffer.allocateDirect(SEGMENT_BYTES);
+		}
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, (long) segmentIndex * SEGMENT_BYTES, SEGMENT_BYTES);
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Unable to map segment " + segmentIndex + " of the off-heap event store.", ioe);
+		}
+	}
+
+	private static int getOffset(int index) {
+		return (index % SEGMENT_RECORDS) * RECORD_SIZE;
+	}
+
+	/**
+	 * Closes the file of a memory-mapped store. The mapped segments stay valid until they are garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * A buffer of {@value OffHeapEventStore#SEGMENT_RECORDS} records and the latest timestamp of its events.
+	 */
+	private static class Segment {
+
+		private final ByteBuffer buffer;
+
+		private long maxTimestamp = Long.MIN_VALUE;
+
+		Segment(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.jboss.ddoyle.drools.demo.offheap;
+
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.util.Date;
+
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.jboss.ddoyle.drools.demo.model.v1.TimestampMillisEvent;
+
+/**
+ * Flyweight of an event of which the payload is kept in an {@link OffHeapEventStore}. On the heap, the event only consists of a reference
+ * to the store and the index of its record. The <code>code</code> and <code>timestampMillis</code> the rules constrain on are read from
+ * the store without allocating. The id is decoded on every call.
+ * <p/>
+ * The event can't be serialized, as the store can't be serialized along with it. Replacing it by a {@link SimpleEvent} would change its
+ * type, so a marshalled session would no longer match the rules written against <code>OffHeapSimpleEvent</code> after it's unmarshalled.
+ * Sessions that hold these events should therefore not be marshalled, but be rebuilt by replaying the events into a new store.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class OffHeapSimpleEvent implements TimestampMillisEvent {
+
+	/**
+	 * SerialVersionUID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private final transient OffHeapEventStore store;
+
+	private final int index;
+
+	OffHeapSimpleEvent(OffHeapEventStore store, int index) {
+		this.store = store;
+		this.index = index;
+	}
+
+	public String getId() {
+		return store.getId(index);
+	}
+
+	public String getCode() {
+		return store.getCode(index);
+	}
+
+	public Date getTimestamp() {
+		return new Date(getTimestampMillis());
+	}
+
+	public long getTimestampMillis() {
+		return store.getTimestampMillis(index);
+	}
+
+	/**
+	 * @return the index of this event's record in its store.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		throw new NotSerializableException(getClass().getName() + " is backed by an off-heap store and can't be serialized.");
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(store) + index;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof OffHeapSimpleEvent)) {
+			return false;
+		}
+		OffHeapSimpleEvent other = (OffHeapSimpleEvent) obj;
+		return store == other.store && index == other.index;
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapSimpleEvent [index=" + index + ", id=" + getId() + ", code=" + getCode() + ", timestampMillis=" + getTimestampMillis()
+				+ "]";
+	}
+
+}
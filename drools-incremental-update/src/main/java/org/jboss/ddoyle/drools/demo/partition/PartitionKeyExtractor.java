@@ -0,0 +1,18 @@
+package org.jboss.ddoyle.drools.demo.partition;
+
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+
+/**
+ * Determines the partition key of an {@link Event}. Events with equal keys are processed by the same session of a
+ * {@link PartitionedKieSessions}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public interface PartitionKeyExtractor {
+
+	/**
+	 * @return the partition key of the event. Must not be <code>null</code>.
+	 */
+	public abstract Object getPartitionKey(Event event);
+
+}
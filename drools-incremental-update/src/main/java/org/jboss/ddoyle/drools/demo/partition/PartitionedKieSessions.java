@@ -0,0 +1,248 @@
+package org.jboss.ddoyle.drools.demo.partition;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.jboss.ddoyle.drools.demo.update.FanOutSessionUpdater;
+import org.jboss.ddoyle.drools.demo.update.FanOutSessionUpdater.FanOutResult;
+import org.jboss.ddoyle.drools.demo.update.SessionUpdateProgressListener;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.time.SessionPseudoClock;
+
+/**
+ * Processes {@link Event Events} in a number of independent sessions of the same {@link KieContainer}, partitioned on a key of the events
+ * (e.g. the code of a {@link org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent}). A single session only uses a single core, partitioning
+ * allows a box to process events with as many cores as there are partitions.
+ * <p/>
+ * Every partition has its own session, with its own pseudo clock and agenda, which is only used from the partition's own thread. The events
+ * of a partition are inserted in the order in which they are passed to {@link #insert(Event)}, and the pseudo clock of the partition
+ * follows the timestamps of its events. The sessions must be configured with a pseudo clock.
+ * <p/>
+ * Partitioning only gives the same results as a single session when the rules only correlate events with the same partition key. The
+ * rules of <code>originalRules/rules.drl</code> are an example of rules that do not: the <code>not</code> of
+ * <code>SimpleTestRule-Two</code> matches events of any code, so an event of another code only blocks the rule in a single session. The
+ * rules of <code>partitionedRules/rules.drl</code> constrain the <code>not</code> to events of the same code, which makes them safe to
+ * partition on the code.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class PartitionedKieSessions implements Closeable {
+
+	private final KieContainer kieContainer;
+
+	private final PartitionKeyExtractor keyExtractor;
+
+	private final Partition[] partitions;
+
+	private final Map<KieSession, Partition> partitionsBySession = new IdentityHashMap<>();
+
+	private final List<KieSession> kieSessions = new ArrayList<>();
+
+	/**
+	 * Creates the partitions, each with a new session of the default KieSession of the given container.
+	 */
+	public PartitionedKieSessions(KieContainer kieContainer, int nrOfPartitions, PartitionKeyExtractor keyExtractor) {
+		if (nrOfPartitions < 1) {
+			throw new IllegalArgumentException("Number of partitions must be at least 1, got: " + nrOfPartitions);
+		}
+		this.kieContainer = kieContainer;
+		this.keyExtractor = keyExtractor;
+		this.partitions = new Partition[nrOfPartitions];
+		for (int index = 0; index < nrOfPartitions; index++) {
+			partitions[index] = new Partition(index, kieContainer.newKieSession());
+			partitionsBySession.put(partitions[index].kieSession, partitions[index]);
+			kieSessions.add(partitions[index].kieSession);
+		}
+	}
+
+	public int getNrOfPartitions() {
+		return partitions.length;
+	}
+
+	/**
+	 * @return the index of the partition that processes the events with the given partition key.
+	 */
+	public int getPartition(Object partitionKey) {
+		return (partitionKey.hashCode() & Integer.MAX_VALUE) % partitions.length;
+	}
+
+	/**
+	 * Returns the session of the given partition. The session may only be used from the thread of its partition, e.g. through
+	 * {@link #submit(int, Callable)}, or when no events are being processed.
+	 */
+	public KieSession getKieSession(int partition) {
+		return partitions[partition].kieSession;
+	}
+
+	/**
+	 * Inserts the event in the session of its partition, advances the clock of the partition to the timestamp of the event and fires the
+	 * rules.
+	 *
+	 * @return the number of rules fired.
+	 */
+	public Future<Integer> insert(final Event event) {
+		final Partition partition = partitions[getPartition(keyExtractor.getPartitionKey(event))];
+		return partition.executor.submit(new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				partition.kieSession.insert(event);
+				partition.advanceTo(Events.getTimestampMillis(event));
+				return partition.kieSession.fireAllRules();
+			}
+		});
+	}
+
+	/**
+	 * Advances the clocks of all partitions to the given time, e.g. when there have been no events for a while, and fires the rules.
+	 *
+	 * @return the number of rules fired per partition.
+	 */
+	public List<Future<Integer>> advanceTo(final long timestamp) {
+		List<Future<Integer>> rulesFired = new ArrayList<>(partitions.length);
+		for (final Partition nextPartition : partitions) {
+			rulesFired.add(nextPartition.executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					nextPartition.advanceTo(timestamp);
+					return nextPartition.kieSession.fireAllRules();
+				}
+			}));
+		}
+		return rulesFired;
+	}
+
+	/**
+	 * Runs a task on the thread of the given partition, after the events that have already been inserted in it.
+	 */
+	public <T> Future<T> submit(int partition, Callable<T> task) {
+		return partitions[partition].executor.submit(task);
+	}
+
+	/**
+	 * Updates the container to the given version, and catches up the sessions of all partitions on their own threads.
+	 * <p/>
+	 * The partitions first finish the events that have already been inserted, and are then paused while the KieBase, which is shared by all
+	 * sessions, is updated. Events inserted during the update are processed by the updated sessions, after they have been caught up.
+	 *
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the partitions.
+	 */
+	public FanOutResult update(ReleaseId releaseId, SessionUpdateProgressListener listener) throws InterruptedException {
+		final CountDownLatch paused = new CountDownLatch(partitions.length);
+		for (final Partition nextPartition : partitions) {
+			nextPartition.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					paused.countDown();
+					try {
+						nextPartition.handOff.take().run();
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		final Set<Partition> resumed = new HashSet<>();
+		try {
+			paused.await();
+			FanOutSessionUpdater updater = new FanOutSessionUpdater(kieContainer) {
+				@Override
+				protected Future<Integer> submitCatchUp(KieSession kieSession, Callable<Integer> catchUp) {
+					FutureTask<Integer> task = new FutureTask<>(catchUp);
+					Partition partition = partitionsBySession.get(kieSession);
+					resumed.add(partition);
+					partition.handOff.add(task);
+					return task;
+				}
+			};
+			return updater.update(releaseId, kieSessions, listener);
+		} finally {
+			// Resume the partitions that have not been handed a catch-up, e.g. when the KieBase update failed.
+			for (Partition nextPartition : partitions) {
+				if (!resumed.contains(nextPartition)) {
+					nextPartition.handOff.add(NO_OP);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finishes the events that have already been inserted, disposes the sessions and stops the threads of the partitions.
+	 */
+	@Override
+	public void close() {
+		for (final Partition nextPartition : partitions) {
+			nextPartition.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					nextPartition.kieSession.dispose();
+				}
+			});
+			nextPartition.executor.shutdown();
+		}
+	}
+
+	private static final Runnable NO_OP = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	/**
+	 * A session with the thread that owns it.
+	 */
+	private static class Partition {
+
+		private final KieSession kieSession;
+
+		private final SessionPseudoClock clock;
+
+		private final ExecutorService executor;
+
+		/**
+		 * Hands the catch-up of an update to the paused partition.
+		 */
+		private final BlockingQueue<Runnable> handOff = new LinkedBlockingQueue<>();
+
+		private Partition(final int index, KieSession kieSession) {
+			this.kieSession = kieSession;
+			this.clock = kieSession.getSessionClock();
+			this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "partition-" + index);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		private void advanceTo(long timestamp) {
+			long currentTime = clock.getCurrentTime();
+			if (timestamp > currentTime) {
+				clock.advanceTime(timestamp - currentTime, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package org.jboss.ddoyle.drools.demo.partition;
+
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+
+/**
+ * Partitions {@link SimpleEvent SimpleEvents} on their code.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class SimpleEventCodeKeyExtractor implements PartitionKeyExtractor {
+
+	@Override
+	public Object getPartitionKey(Event event) {
+		if (!(event instanceof SimpleEvent)) {
+			throw new IllegalArgumentException("Can only partition SimpleEvents on code, got: " + event);
+		}
+		String code = ((SimpleEvent) event).getCode();
+		if (code == null) {
+			throw new IllegalArgumentException("SimpleEvent '" + event.getId() + "' has no code.");
+		}
+		return code;
+	}
+
+}
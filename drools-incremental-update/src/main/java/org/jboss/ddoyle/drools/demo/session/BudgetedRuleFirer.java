@@ -0,0 +1,101 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.time.SessionPseudoClock;
+
+/**
+ * Inserts {@link Event Events} into a {@link KieSession} that runs on a pseudo clock, and fires at most a fixed number of rules per insert.
+ * <p/>
+ * After a rule has been added to the KieBase, the first {@link KieSession#fireAllRules()} fires the new rule for every fact already in
+ * the session, which blocks the ingestion of new events for the duration of the catch-up. With a budget, that backlog is worked off in
+ * slices, interleaved with the inserts of new events: every insert fires at most the budget of rules, and {@link #fire()} can be called
+ * when there are no events to fire the next slice. Drools keeps its agenda across the bounded calls, so the backlog isn't lost.
+ * <p/>
+ * The rules don't fire in the same order as with an unbounded {@link KieSession#fireAllRules()} though:
+ * <ul>
+ * <li>The matches of the events inserted between the slices compete with the backlog on salience and, for equal salience, on the load
+ * order of their rules. The matches of a rule that was loaded before the added rule therefore fire ahead of the backlog.</li>
+ * <li>The pseudo clock advances between the slices, so matches in the backlog can be cancelled before they fire, e.g. when their event
+ * expires or when a later event matches the <code>not</code> of a temporal rule.</li>
+ * </ul>
+ * Drools evaluates the network of a rule, i.e. propagates the existing facts through its nodes and creates its matches, when the rule is
+ * first fired. A bounded call only evaluates the rules it fires, so the propagation is sliced per rule, but the evaluation of a single rule
+ * isn't bounded: the first call that fires a new rule evaluates it against all facts in the session. Drools 6.2 doesn't offer a way to
+ * split that evaluation. The latency distribution of the inserts during a catch-up, e.g. against a 5 ms p99 target, is measured by the
+ * <code>BudgetedRuleFirerBenchmark</code> of the benchmarks module.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class BudgetedRuleFirer {
+
+	private final KieSession kieSession;
+
+	private final SessionPseudoClock clock;
+
+	private final int maxRulesPerFire;
+
+	private boolean backlogged;
+
+	/**
+	 * @param kieSession
+	 *            the session to insert the events in. The session must use a pseudo clock.
+	 * @param maxRulesPerFire
+	 *            the maximum number of rules to fire per insert or {@link #fire()}.
+	 */
+	public BudgetedRuleFirer(KieSession kieSession, int maxRulesPerFire) {
+		if (maxRulesPerFire < 1) {
+			throw new IllegalArgumentException("Maximum number of rules per fire must be at least 1, got: " + maxRulesPerFire);
+		}
+		this.kieSession = kieSession;
+		this.clock = kieSession.getSessionClock();
+		this.maxRulesPerFire = maxRulesPerFire;
+	}
+
+	/**
+	 * Inserts the event, advances the pseudo clock to its timestamp and fires at most the budget of rules.
+	 *
+	 * @return the number of rules fired.
+	 */
+	public int insertAndFire(Event event) {
+		kieSession.insert(event);
+		long timestamp = Events.getTimestampMillis(event);
+		long currentTime = clock.getCurrentTime();
+		if (timestamp > currentTime) {
+			clock.advanceTime(timestamp - currentTime, TimeUnit.MILLISECONDS);
+		}
+		return fire();
+	}
+
+	/**
+	 * Fires at most the budget of rules.
+	 *
+	 * @return the number of rules fired.
+	 */
+	public int fire() {
+		int rulesFired = kieSession.fireAllRules(maxRulesPerFire);
+		backlogged = rulesFired >= maxRulesPerFire;
+		return rulesFired;
+	}
+
+	/**
+	 * Fires all remaining rules, without a budget.
+	 *
+	 * @return the number of rules fired.
+	 */
+	public int drain() {
+		backlogged = false;
+		return kieSession.fireAllRules();
+	}
+
+	/**
+	 * @return whether the last call used up its budget, in which case there may be rules left to fire.
+	 */
+	public boolean isBacklogged() {
+		return backlogged;
+	}
+
+}
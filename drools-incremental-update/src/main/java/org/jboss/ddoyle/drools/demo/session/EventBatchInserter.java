@@ -0,0 +1,116 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.time.SessionPseudoClock;
+
+/**
+ * Inserts time-sorted batches of {@link Event Events} into a {@link KieSession} that runs on a pseudo clock, and fires the rules at the end
+ * of every batch.
+ * <p/>
+ * Instead of advancing the pseudo clock to the timestamp of every event, the clock is only advanced when the next event is more than the
+ * clock advance interval ahead of the clock, and once at the end of the batch. The clock is never advanced past an event that has not been
+ * inserted yet. As long as the interval is not larger than the smallest temporal window of the rules (e.g. the <code>10s</code> of
+ * <code>after [0,10s]</code>), timers and expirations fire in the same order with respect to the inserts as when the clock is advanced per
+ * event.
+ * <p/>
+ * The matches of a batch are fired at the end of the batch. An event that expires before that, e.g. because of the <code>@expires( 2d )</code>
+ * of the test DRLs, would cancel its matches before they fire. So the rules are also fired before the clock is advanced more than the
+ * maximum fire interval past the timestamp of the first event inserted since the last fire. As long as this interval is smaller than the
+ * smallest <code>@expires</code> of the event types in the session, batches can span any time range.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class EventBatchInserter {
+
+	private final KieSession kieSession;
+
+	private final SessionPseudoClock clock;
+
+	private final long clockAdvanceIntervalMillis;
+
+	private final long maxFireIntervalMillis;
+
+	/**
+	 * @param kieSession
+	 *            the session to insert the events in. The session must use a pseudo clock.
+	 * @param clockAdvanceIntervalMillis
+	 *            the maximum time, in milliseconds, an event can be ahead of the pseudo clock before the clock is advanced. Should not be
+	 *            larger than the smallest temporal window of the rules in the session.
+	 * @param maxFireIntervalMillis
+	 *            the maximum time, in milliseconds, the clock can be advanced past the timestamp of the first event inserted since the last
+	 *            fire before the rules are fired. Must be smaller than the smallest <code>@expires</code> of the event types in the session.
+	 */
+	public EventBatchInserter(KieSession kieSession, long clockAdvanceIntervalMillis, long maxFireIntervalMillis) {
+		if (clockAdvanceIntervalMillis < 0) {
+			throw new IllegalArgumentException("Clock advance interval can't be negative: " + clockAdvanceIntervalMillis);
+		}
+		if (maxFireIntervalMillis < 0) {
+			throw new IllegalArgumentException("Maximum fire interval can't be negative: " + maxFireIntervalMillis);
+		}
+		this.kieSession = kieSession;
+		this.clock = kieSession.getSessionClock();
+		this.clockAdvanceIntervalMillis = clockAdvanceIntervalMillis;
+		this.maxFireIntervalMillis = maxFireIntervalMillis;
+	}
+
+	/**
+	 * Inserts the given events, advances the pseudo clock to the timestamp of the last event and fires the rules. The rules are also fired
+	 * within the batch when the clock is about to be advanced more than the maximum fire interval.
+	 *
+	 * @param events
+	 *            the events to insert, sorted on timestamp.
+	 * @return the number of rules fired.
+	 * @throws IllegalArgumentException
+	 *             if the events are not sorted on timestamp. The batch is validated before the first insert, so the session is not changed.
+	 */
+	public int insertAndFire(List<? extends Event> events) {
+		long lastTimestamp = Long.MIN_VALUE;
+		for (Event nextEvent : events) {
+			long timestamp = Events.getTimestampMillis(nextEvent);
+			if (timestamp < lastTimestamp) {
+				throw new IllegalArgumentException("Events are not sorted on timestamp, event '" + nextEvent.getId()
+						+ "' is before its predecessor.");
+			}
+			lastTimestamp = timestamp;
+		}
+
+		int rulesFired = 0;
+		boolean unfiredInserts = false;
+		long firstUnfiredTimestamp = 0;
+		lastTimestamp = Long.MIN_VALUE;
+		for (Event nextEvent : events) {
+			long timestamp = Events.getTimestampMillis(nextEvent);
+			if (timestamp - clock.getCurrentTime() > clockAdvanceIntervalMillis) {
+				if (unfiredInserts && lastTimestamp - firstUnfiredTimestamp > maxFireIntervalMillis) {
+					rulesFired += kieSession.fireAllRules();
+					unfiredInserts = false;
+				}
+				advanceTo(lastTimestamp);
+			}
+			kieSession.insert(nextEvent);
+			if (!unfiredInserts) {
+				unfiredInserts = true;
+				firstUnfiredTimestamp = timestamp;
+			}
+			lastTimestamp = timestamp;
+		}
+		if (unfiredInserts && lastTimestamp - firstUnfiredTimestamp > maxFireIntervalMillis) {
+			rulesFired += kieSession.fireAllRules();
+		}
+		advanceTo(lastTimestamp);
+		return rulesFired + kieSession.fireAllRules();
+	}
+
+	private void advanceTo(long timestamp) {
+		long currentTime = clock.getCurrentTime();
+		if (timestamp > currentTime) {
+			clock.advanceTime(timestamp - currentTime, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
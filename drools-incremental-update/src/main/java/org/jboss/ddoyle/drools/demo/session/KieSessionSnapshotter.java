@@ -0,0 +1,200 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.codec.SimpleEventMarshallingStrategy;
+import org.kie.api.KieServices;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.marshalling.Marshaller;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.time.SessionPseudoClock;
+
+/**
+ * Writes snapshots of running STREAM sessions with a pseudo clock to a file, and restores them into a newer version of their KJAR.
+ * <p/>
+ * A snapshot consists of a header with the {@link ReleaseId} of the session's KJAR and the pseudo clock time, followed by the session as
+ * marshalled by the Drools {@link Marshaller}, which includes the facts, node memories (e.g. accumulate state), the agenda and the pending
+ * timers. {@link org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent SimpleEvents} are marshalled with the
+ * {@link SimpleEventMarshallingStrategy}, all other facts with Java serialization.
+ * <p/>
+ * A snapshot is restored in the version of the KJAR it was taken with, which therefore must still be available in the
+ * {@link org.kie.api.builder.KieRepository}. The container of the restored session is then updated to the requested version, so the
+ * restored session gets the same incremental update semantics as a session that was running when the KJAR was updated. The snapshot is read
+ * through a single memory-mapped buffer, which limits its size to 2GB.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class KieSessionSnapshotter {
+
+	private static final int MAGIC = 0x4B534E50;
+
+	private static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final KieServices kieServices;
+
+	public KieSessionSnapshotter(KieServices kieServices) {
+		this.kieServices = kieServices;
+	}
+
+	/**
+	 * Writes a snapshot of the given session, which has been created from the default KieBase of the given container. Must be called from
+	 * the thread that owns the session.
+	 */
+	public void write(KieContainer kieContainer, KieSession kieSession, File file) throws IOException {
+		ReleaseId releaseId = kieContainer.getReleaseId();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(releaseId.getGroupId());
+			out.writeUTF(releaseId.getArtifactId());
+			out.writeUTF(releaseId.getVersion());
+			out.writeLong(kieSession.getSessionClock().getCurrentTime());
+			newMarshaller(kieContainer).marshall(out, kieSession);
+		}
+	}
+
+	/**
+	 * Restores a snapshot into a new {@link KieContainer}, and updates that container to the given version.
+	 *
+	 * @param file
+	 *            the snapshot.
+	 * @param releaseId
+	 *            the version to restore the session in.
+	 * @return the restored session and its container.
+	 * @throws IOException
+	 *             if the snapshot can't be read.
+	 * @throws IllegalStateException
+	 *             if the container can't be updated to the given version.
+	 */
+	public RestoredSession restore(File file, ReleaseId releaseId) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a session snapshot: " + file);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported session snapshot version: " + version);
+			}
+			ReleaseId snapshotReleaseId = kieServices.newReleaseId(in.readUTF(), in.readUTF(), in.readUTF());
+			long clockTime = in.readLong();
+
+			KieContainer kieContainer = kieServices.newKieContainer(snapshotReleaseId);
+			KieSessionConfiguration kieSessionConfiguration = kieServices.newKieSessionConfiguration();
+			kieSessionConfiguration.setOption(ClockTypeOption.get("pseudo"));
+			KieSession kieSession;
+			try {
+				kieSession = newMarshaller(kieContainer).unmarshall(in, kieSessionConfiguration, kieServices.newEnvironment());
+			} catch (ClassNotFoundException cnfe) {
+				throw new IOException("Unable to unmarshall session snapshot: " + file, cnfe);
+			}
+			SessionPseudoClock clock = kieSession.getSessionClock();
+			long advanceTime = clockTime - clock.getCurrentTime();
+			if (advanceTime > 0) {
+				clock.advanceTime(advanceTime, TimeUnit.MILLISECONDS);
+			}
+
+			Results results = kieContainer.updateToVersion(releaseId);
+			if (!results.getMessages(Message.Level.ERROR).isEmpty()) {
+				kieSession.dispose();
+				throw new IllegalStateException("Error updating restored session to '" + releaseId + "': " + results.getMessages());
+			}
+			return new RestoredSession(kieContainer, kieSession, snapshotReleaseId);
+		}
+	}
+
+	private Marshaller newMarshaller(KieContainer kieContainer) {
+		return kieServices.getMarshallers().newMarshaller(
+				kieContainer.getKieBase(),
+				new ObjectMarshallingStrategy[] { new SimpleEventMarshallingStrategy(),
+						kieServices.getMarshallers().newSerializeMarshallingStrategy() });
+	}
+
+	/**
+	 * A session restored from a snapshot.
+	 */
+	public static class RestoredSession {
+
+		private final KieContainer kieContainer;
+
+		private final KieSession kieSession;
+
+		private final ReleaseId snapshotReleaseId;
+
+		private RestoredSession(KieContainer kieContainer, KieSession kieSession, ReleaseId snapshotReleaseId) {
+			this.kieContainer = kieContainer;
+			this.kieSession = kieSession;
+			this.snapshotReleaseId = snapshotReleaseId;
+		}
+
+		public KieContainer getKieContainer() {
+			return kieContainer;
+		}
+
+		public KieSession getKieSession() {
+			return kieSession;
+		}
+
+		/**
+		 * @return the version of the KJAR the snapshot was taken with.
+		 */
+		public ReleaseId getSnapshotReleaseId() {
+			return snapshotReleaseId;
+		}
+	}
+
+	/**
+	 * {@link InputStream} over a {@link ByteBuffer}.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int read = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, read);
+			return read;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.time.SessionPseudoClock;
+
+/**
+ * Inserts {@link Event Events} into a {@link KieSession} and retracts them in bulk, per time bucket, when they have expired.
+ * <p/>
+ * Drools schedules an expiration job for every event with an <code>@expires</code>, so a large clock advance fires one job per expired
+ * event. This store groups the fact handles of the events in buckets on their timestamp, and deletes all events of a bucket at once when
+ * the whole bucket is older than the retention time. Events therefore live at least the retention time, and at most the retention time
+ * plus the bucket size. The event type should be declared without <code>@expires</code> when its expiration is managed by this store.
+ * <p/>
+ * Like a {@link KieSession}, this store is not thread-safe.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class TimeBucketedEventStore {
+
+	private final KieSession kieSession;
+
+	private final long retentionMillis;
+
+	private final long bucketSizeMillis;
+
+	private final TreeMap<Long, List<FactHandle>> buckets = new TreeMap<>();
+
+	private long eventCount;
+
+	/**
+	 * @param kieSession
+	 *            the session to insert the events in.
+	 * @param retentionMillis
+	 *            the minimum time, in milliseconds, an event is kept in the session, i.e. the <code>@expires</code> of the event.
+	 * @param bucketSizeMillis
+	 *            the time span, in milliseconds, of a bucket.
+	 */
+	public TimeBucketedEventStore(KieSession kieSession, long retentionMillis, long bucketSizeMillis) {
+		if (bucketSizeMillis <= 0) {
+			throw new IllegalArgumentException("Bucket size must be positive: " + bucketSizeMillis);
+		}
+		this.kieSession = kieSession;
+		this.retentionMillis = retentionMillis;
+		this.bucketSizeMillis = bucketSizeMillis;
+	}
+
+	/**
+	 * Inserts the event into the session and adds its fact handle to the bucket of its timestamp.
+	 */
+	public FactHandle insert(Event event) {
+		FactHandle factHandle = kieSession.insert(event);
+		long timestamp = Events.getTimestampMillis(event);
+		long bucket = timestamp - (((timestamp % bucketSizeMillis) + bucketSizeMillis) % bucketSizeMillis);
+		List<FactHandle> bucketHandles = buckets.get(bucket);
+		if (bucketHandles == null) {
+			bucketHandles = new ArrayList<>();
+			buckets.put(bucket, bucketHandles);
+		}
+		bucketHandles.add(factHandle);
+		eventCount++;
+		return factHandle;
+	}
+
+	/**
+	 * Advances the pseudo clock of the session to the given time, if it is not already past that time, and retracts the expired buckets.
+	 *
+	 * @return the number of events retracted.
+	 */
+	public int advanceTo(long timestamp) {
+		SessionPseudoClock clock = kieSession.getSessionClock();
+		long currentTime = clock.getCurrentTime();
+		if (timestamp > currentTime) {
+			clock.advanceTime(timestamp - currentTime, TimeUnit.MILLISECONDS);
+		}
+		return retractExpired();
+	}
+
+	/**
+	 * Retracts all buckets of which all events are older than the retention time, according to the session clock.
+	 *
+	 * @return the number of events retracted.
+	 */
+	public int retractExpired() {
+		long expiredBefore = kieSession.getSessionClock().getCurrentTime() - retentionMillis;
+		int retracted = 0;
+		for (Iterator<Map.Entry<Long, List<FactHandle>>> bucketIterator = buckets.entrySet().iterator(); bucketIterator.hasNext();) {
+			Map.Entry<Long, List<FactHandle>> nextBucket = bucketIterator.next();
+			if (nextBucket.getKey() + bucketSizeMillis > expiredBefore) {
+				break;
+			}
+			for (FactHandle nextFactHandle : nextBucket.getValue()) {
+				// The event might have been retracted by a rule.
+				if (kieSession.getObject(nextFactHandle) != null) {
+					kieSession.delete(nextFactHandle);
+					retracted++;
+				}
+			}
+			eventCount -= nextBucket.getValue().size();
+			bucketIterator.remove();
+		}
+		return retracted;
+	}
+
+	/**
+	 * Returns the number of events inserted through this store of which the bucket has not been retracted yet. An event that is retracted by a
+	 * rule is still counted until its bucket expires, as the store doesn't track the retractions of the session. Use
+	 * {@link KieSession#getFactCount()} for the number of events that are actually in the session.
+	 *
+	 * @return the number of events in the buckets of this store.
+	 */
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	public int getBucketCount() {
+		return buckets.size();
+	}
+
+}
@@ -0,0 +1,254 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.drools.compiler.compiler.DrlParser;
+import org.drools.compiler.compiler.DroolsParserException;
+import org.drools.compiler.lang.descr.AttributeDescr;
+import org.drools.compiler.lang.descr.BaseDescr;
+import org.drools.compiler.lang.descr.ConditionalElementDescr;
+import org.drools.compiler.lang.descr.ExprConstraintDescr;
+import org.drools.compiler.lang.descr.PackageDescr;
+import org.drools.compiler.lang.descr.PatternDescr;
+import org.drools.compiler.lang.descr.RuleDescr;
+import org.kie.internal.builder.conf.LanguageLevelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the {@link RuleFingerprint RuleFingerprints} of the rules in a DRL. The content hash of a rule is independent of the resource
+ * the rule is defined in, its position in that resource, its name, comments and formatting.
+ * <p/>
+ * The canonical hash of a rule is also independent of the order of the constraints in its patterns, as long as these are all literal
+ * constraints on a field of the pattern's fact, e.g. <code>SimpleEvent(code=="MY_CODE", $id:id=="1")</code>. These constraints can't guard
+ * each other, so their order doesn't change the semantics of the rule. The constraints of patterns with any other constraint keep their
+ * order, and rules with elements that aren't canonicalized (e.g. <code>from</code>, <code>accumulate</code> or <code>eval</code>) get
+ * their content hash as canonical hash.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class DrlRuleFingerprinter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DrlRuleFingerprinter.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String RULE_KEYWORD = "rule";
+
+	/**
+	 * A literal constraint on a field of the pattern's fact, optionally bound to a variable.
+	 */
+	private static final Pattern LITERAL_CONSTRAINT = Pattern.compile("(\\$[\\w$]* ?: ?)?[\\w$]+ ?(==|!=|<=|>=|<|>) ?"
+			+ "(\"([^\"\\\\]|\\\\.)*\"|'([^'\\\\]|\\\\.)*'|-?\\d+(\\.\\d+)?[lLfFdD]?|true|false|null)");
+
+	/**
+	 * @return the fingerprints of the rules in the DRL, or an empty list if the DRL can't be parsed.
+	 */
+	public List<RuleFingerprint> fingerprint(String drl) {
+		PackageDescr packageDescr = parse(drl);
+		if (packageDescr == null) {
+			return Collections.emptyList();
+		}
+		List<RuleFingerprint> fingerprints = new ArrayList<>();
+		for (RuleDescr nextRule : packageDescr.getRules()) {
+			String contentHash = hash(getRuleBody(drl, nextRule));
+			String canonicalRule = getCanonicalRule(nextRule);
+			String canonicalHash = (canonicalRule == null) ? contentHash : hash(canonicalRule);
+			fingerprints.add(new RuleFingerprint(packageDescr.getName(), nextRule.getName(), contentHash, canonicalHash));
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * @return the source of the rule with the given name as it is in the DRL, or <code>null</code> if the DRL can't be parsed, doesn't
+	 *         contain the rule or has no location information for it.
+	 */
+	public String getRuleSource(String drl, String ruleName) {
+		return getRuleSources(drl).get(ruleName);
+	}
+
+	/**
+	 * Parses the DRL once and returns the sources of all its rules as they are in the DRL, by rule name and in the order of the DRL. Rules
+	 * without location information are left out.
+	 * 
+	 * @return the sources of the rules in the DRL, or an empty map if the DRL can't be parsed.
+	 */
+	public Map<String, String> getRuleSources(String drl) {
+		PackageDescr packageDescr = parse(drl);
+		if (packageDescr == null) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> ruleSources = new LinkedHashMap<>();
+		for (RuleDescr nextRule : packageDescr.getRules()) {
+			int start = nextRule.getStartCharacter();
+			int end = Math.min(nextRule.getEndCharacter() + 1, drl.length());
+			if (start >= 0 && end > start) {
+				ruleSources.put(nextRule.getName(), drl.substring(start, end));
+			}
+		}
+		return ruleSources;
+	}
+
+	private PackageDescr parse(String drl) {
+		try {
+			DrlParser parser = new DrlParser(LanguageLevelOption.DRL6);
+			PackageDescr packageDescr = parser.parse(false, drl);
+			if (packageDescr == null || parser.hasErrors()) {
+				LOGGER.debug("Unable to parse DRL: {}", parser.getErrors());
+				return null;
+			}
+			return packageDescr;
+		} catch (DroolsParserException dpe) {
+			LOGGER.debug("Unable to parse DRL.", dpe);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the normalized source of the rule, without the '<code>rule "name"</code>' header.
+	 */
+	protected String getRuleBody(String drl, RuleDescr ruleDescr) {
+		int start = ruleDescr.getStartCharacter();
+		int end = Math.min(ruleDescr.getEndCharacter() + 1, drl.length());
+		if (start < 0 || end <= start) {
+			// No location information, fall back to the parsed rule.
+			return normalize(ruleDescr.getAttributes() + " " + ruleDescr.getLhs() + " " + ruleDescr.getConsequence());
+		}
+		String normalizedRule = normalize(drl.substring(start, end));
+		// Search the name after the 'rule' keyword, so short names don't match inside the keyword.
+		int nameIndex = normalizedRule.startsWith(RULE_KEYWORD) ? normalizedRule.indexOf(ruleDescr.getName(), RULE_KEYWORD.length()) : -1;
+		if (nameIndex < 0) {
+			return normalizedRule;
+		}
+		int bodyIndex = nameIndex + ruleDescr.getName().length();
+		if (bodyIndex < normalizedRule.length() && (normalizedRule.charAt(bodyIndex) == '"' || normalizedRule.charAt(bodyIndex) == '\'')) {
+			bodyIndex++;
+		}
+		return normalizedRule.substring(bodyIndex).trim();
+	}
+
+	/**
+	 * Returns the canonical form of the rule, i.e. its attributes, LHS with sorted literal constraints and normalized RHS, or
+	 * <code>null</code> if the rule has elements that aren't canonicalized.
+	 */
+	protected String getCanonicalRule(RuleDescr ruleDescr) {
+		if (!ruleDescr.getAnnotations().isEmpty() || !ruleDescr.getNamedConsequences().isEmpty()) {
+			return null;
+		}
+		String canonicalLhs = getCanonicalLhs(ruleDescr.getLhs());
+		if (canonicalLhs == null) {
+			return null;
+		}
+		Map<String, String> attributes = new TreeMap<>();
+		for (AttributeDescr nextAttribute : ruleDescr.getAttributes().values()) {
+			attributes.put(nextAttribute.getName(), normalize(nextAttribute.getValue()));
+		}
+		return "extends " + ruleDescr.getParentName() + " " + attributes + " when " + canonicalLhs + " then "
+				+ normalize(String.valueOf(ruleDescr.getConsequence()));
+	}
+
+	private String getCanonicalLhs(BaseDescr descr) {
+		if (descr instanceof PatternDescr) {
+			return getCanonicalPattern((PatternDescr) descr);
+		}
+		if (!(descr instanceof ConditionalElementDescr)) {
+			return null;
+		}
+		StringBuilder canonicalLhs = new StringBuilder(descr.getClass().getSimpleName()).append('[');
+		for (BaseDescr nextDescr : ((ConditionalElementDescr) descr).getDescrs()) {
+			String canonicalDescr = getCanonicalLhs(nextDescr);
+			if (canonicalDescr == null) {
+				return null;
+			}
+			canonicalLhs.append(canonicalDescr).append(';');
+		}
+		return canonicalLhs.append(']').toString();
+	}
+
+	private String getCanonicalPattern(PatternDescr patternDescr) {
+		if (patternDescr.getSource() != null || !patternDescr.getBehaviors().isEmpty()) {
+			return null;
+		}
+		List<String> constraints = new ArrayList<>();
+		boolean literalConstraintsOnly = true;
+		for (BaseDescr nextDescr : patternDescr.getDescrs()) {
+			if (!(nextDescr instanceof ExprConstraintDescr)
+					|| ((ExprConstraintDescr) nextDescr).getType() == ExprConstraintDescr.Type.POSITIONAL) {
+				return null;
+			}
+			String constraint = normalize(((ExprConstraintDescr) nextDescr).getExpression());
+			literalConstraintsOnly &= LITERAL_CONSTRAINT.matcher(constraint).matches();
+			constraints.add(constraint);
+		}
+		if (literalConstraintsOnly) {
+			Collections.sort(constraints);
+		}
+		return patternDescr.getIdentifier() + ":" + patternDescr.getObjectType() + constraints;
+	}
+
+	/**
+	 * Removes comments and collapses all whitespace outside of string literals into a single space.
+	 */
+	public static String normalize(String source) {
+		StringBuilder normalized = new StringBuilder(source.length());
+		int length = source.length();
+		char quote = 0;
+		boolean pendingSpace = false;
+		for (int index = 0; index < length; index++) {
+			char nextChar = source.charAt(index);
+			if (quote != 0) {
+				normalized.append(nextChar);
+				if (nextChar == '\\' && index + 1 < length) {
+					normalized.append(source.charAt(++index));
+				} else if (nextChar == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (nextChar == '/' && index + 1 < length && source.charAt(index + 1) == '/') {
+				index = skipToEndOfLine(source, index);
+				pendingSpace = true;
+			} else if (nextChar == '/' && index + 1 < length && source.charAt(index + 1) == '*') {
+				int commentEnd = source.indexOf("*/", index + 2);
+				index = (commentEnd < 0) ? length : commentEnd + 1;
+				pendingSpace = true;
+			} else if (Character.isWhitespace(nextChar)) {
+				pendingSpace = true;
+			} else {
+				if (pendingSpace && normalized.length() > 0) {
+					normalized.append(' ');
+				}
+				pendingSpace = false;
+				if (nextChar == '"' || nextChar == '\'') {
+					quote = nextChar;
+				}
+				normalized.append(nextChar);
+			}
+		}
+		return normalized.toString();
+	}
+
+	private static int skipToEndOfLine(String source, int index) {
+		int endOfLine = source.indexOf('\n', index);
+		return (endOfLine < 0) ? source.length() : endOfLine;
+	}
+
+	private static String hash(String content) {
+		try {
+			return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(content.getBytes(UTF_8))).toString(16);
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("SHA-1 is not available.", nsae);
+		}
+	}
+
+}
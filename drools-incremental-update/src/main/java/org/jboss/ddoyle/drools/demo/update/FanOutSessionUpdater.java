@@ -0,0 +1,201 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Updates a {@link KieContainer} that backs many sessions, and catches up all its sessions in parallel.
+ * <p/>
+ * {@link KieContainer#updateToVersion(ReleaseId)} is called once. It updates the KieBase, and with it the network of every session created
+ * from it. The expensive part per session is the propagation of the facts already in the session through the new nodes, which Drools does
+ * lazily on the next {@link KieSession#fireAllRules()}. That first {@link KieSession#fireAllRules()} is run for every session on the
+ * executor of this updater, so the parallelism is bounded by the size of the executor's thread pool.
+ * <p/>
+ * Nothing else may use the sessions while they are being updated, i.e. the threads that feed the sessions must be paused for the duration
+ * of {@link #update(ReleaseId, Collection, SessionUpdateProgressListener)}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class FanOutSessionUpdater {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FanOutSessionUpdater.class);
+
+	private final KieContainer kieContainer;
+
+	private final ExecutorService executor;
+
+	public FanOutSessionUpdater(KieContainer kieContainer, ExecutorService executor) {
+		this.kieContainer = kieContainer;
+		this.executor = executor;
+	}
+
+	/**
+	 * Constructor for subclasses that run the catch-ups themselves, i.e. that override
+	 * {@link #submitCatchUp(KieSession, Callable)}.
+	 */
+	protected FanOutSessionUpdater(KieContainer kieContainer) {
+		this(kieContainer, null);
+	}
+
+	/**
+	 * Updates the container to the given version and catches up all given sessions. Blocks until all sessions have been caught up.
+	 *
+	 * @param releaseId
+	 *            the version to update to.
+	 * @param kieSessions
+	 *            the sessions of the container to catch up.
+	 * @param listener
+	 *            receives the progress of the update, can be <code>null</code>.
+	 * @return the result of the update. When the KieBase update has errors, the sessions are not caught up.
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the sessions. The catch-ups that have not started yet are skipped,
+	 *             and the running catch-ups are waited for, so none of the sessions is in use anymore when this exception is thrown. The
+	 *             skipped sessions propagate their facts through the new nodes on their next {@link KieSession#fireAllRules()}.
+	 */
+	public FanOutResult update(final ReleaseId releaseId, Collection<KieSession> kieSessions, final SessionUpdateProgressListener listener)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		Results results = kieContainer.updateToVersion(releaseId);
+		long updateNanos = System.nanoTime() - start;
+		LOGGER.debug("Updated KieBase to '{}' in {} ms.", releaseId, updateNanos / 1000000);
+		if (listener != null) {
+			listener.kieBaseUpdated(results, updateNanos);
+		}
+
+		FanOutResult fanOutResult = new FanOutResult(results);
+		if (results.hasMessages(Message.Level.ERROR)) {
+			return fanOutResult;
+		}
+
+		final int total = kieSessions.size();
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		Map<KieSession, Future<Integer>> catchUps = new IdentityHashMap<>();
+		for (final KieSession nextKieSession : kieSessions) {
+			catchUps.put(nextKieSession, submitCatchUp(nextKieSession, new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					if (cancelled.get()) {
+						throw new CancellationException("Update to '" + releaseId + "' has been interrupted.");
+					}
+					int rulesFired;
+					try {
+						rulesFired = nextKieSession.fireAllRules();
+					} catch (Throwable t) {
+						// Errors, e.g. a StackOverflowError in a consequence, are reported as well.
+						if (listener != null) {
+							listener.sessionFailed(nextKieSession, t, completed.incrementAndGet(), total);
+						}
+						throw t;
+					}
+					if (listener != null) {
+						listener.sessionUpdated(nextKieSession, rulesFired, completed.incrementAndGet(), total);
+					}
+					return rulesFired;
+				}
+			}));
+		}
+
+		for (Map.Entry<KieSession, Future<Integer>> nextCatchUp : catchUps.entrySet()) {
+			try {
+				fanOutResult.rulesFired.put(nextCatchUp.getKey(), nextCatchUp.getValue().get());
+			} catch (ExecutionException ee) {
+				LOGGER.error("Error catching up session after update to '" + releaseId + "'.", ee.getCause());
+				fanOutResult.failures.put(nextCatchUp.getKey(), ee.getCause());
+			} catch (InterruptedException ie) {
+				LOGGER.warn("Interrupted while catching up sessions after update to '{}', skipping the catch-ups that have not started.",
+						releaseId);
+				cancelled.set(true);
+				awaitCatchUps(catchUps.values());
+				throw ie;
+			}
+		}
+		LOGGER.debug("Updated {} sessions to '{}' in {} ms.", total, releaseId, (System.nanoTime() - start) / 1000000);
+		return fanOutResult;
+	}
+
+	/**
+	 * Waits, uninterruptibly, until all given catch-ups are done.
+	 */
+	private static void awaitCatchUps(Collection<Future<Integer>> catchUps) {
+		for (Future<Integer> nextCatchUp : catchUps) {
+			while (true) {
+				try {
+					nextCatchUp.get();
+					break;
+				} catch (InterruptedException ie) {
+					// The caller throws an InterruptedException once all catch-ups are done.
+				} catch (ExecutionException | CancellationException e) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Submits the catch-up of a session. Runs it on the executor of this updater by default. Subclasses can run it on the thread that owns
+	 * the session instead.
+	 */
+	protected Future<Integer> submitCatchUp(KieSession kieSession, Callable<Integer> catchUp) {
+		return executor.submit(catchUp);
+	}
+
+	/**
+	 * The result of a {@link FanOutSessionUpdater} update.
+	 */
+	public static class FanOutResult {
+
+		private final Results results;
+
+		private final Map<KieSession, Integer> rulesFired = new IdentityHashMap<>();
+
+		private final Map<KieSession, Throwable> failures = new IdentityHashMap<>();
+
+		private FanOutResult(Results results) {
+			this.results = results;
+		}
+
+		/**
+		 * @return the results of the KieBase update.
+		 */
+		public Results getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the number of rules fired by the catch-up of every session that was caught up successfully.
+		 */
+		public Map<KieSession, Integer> getRulesFired() {
+			return Collections.unmodifiableMap(rulesFired);
+		}
+
+		/**
+		 * @return the sessions of which the catch-up failed, with the cause.
+		 */
+		public Map<KieSession, Throwable> getFailures() {
+			return Collections.unmodifiableMap(failures);
+		}
+
+		public boolean isSuccessful() {
+			return !results.hasMessages(Message.Level.ERROR) && failures.isEmpty();
+		}
+	}
+
+}
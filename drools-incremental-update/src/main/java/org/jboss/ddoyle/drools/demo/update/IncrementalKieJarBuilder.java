@@ -0,0 +1,566 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.compiler.compiler.io.memory.MemoryFileSystem;
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.compiler.kie.builder.impl.MemoryKieModule;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.model.KieModuleModel;
+import org.kie.api.io.Resource;
+import org.kie.internal.builder.IncrementalResults;
+import org.kie.internal.builder.InternalKieBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds successive versions of a KJAR, only recompiling the resources that changed since the previous version. Changes are detected on
+ * the SHA-1 hash of the resource contents.
+ * <p/>
+ * The first version is built with {@link KieBuilder#buildAll()}. Every next version is written into the same {@link KieFileSystem} and
+ * built with the incremental build of the same {@link KieBuilder}, which keeps the compiled packages, consequences and the kmodule model of
+ * the unchanged resources. As the {@link KieBuilder} updates the files of its {@link InternalKieModule} in place, every version is returned
+ * with a copy of its files, so the change sets Drools computes between deployed versions stay correct.
+ * <p/>
+ * The compiled packages of the {@link KieBuilder} are not handed over to the returned versions, as the next incremental build changes them
+ * in place. A returned version is immutable, a container created from it compiles the KieBases of that version, also when later versions
+ * have been built in the meantime. Note that {@link org.kie.api.runtime.KieContainer#updateToVersion(ReleaseId)} always compiles the
+ * changed resources once more against the live KieBase, this is done by Drools and can't be avoided by the builder.
+ * <p/>
+ * When an incremental build fails, the next version is built from scratch.
+ * <p/>
+ * Drools treats all rules in a renamed or moved DRL as new rules, so they re-fire for all facts in the session. With
+ * {@link #setPreserveRulesOnResourceRename(boolean)} enabled, a DRL that is new in a version is deployed under the path of a DRL that was
+ * removed in that version, when the two share rules with the same package, name and content (see {@link RuleDiff}). Drools then sees a
+ * change to an existing resource and keeps the rules that didn't change, with their network nodes and memories. Note that this doesn't
+ * work with KieBases that select their packages on resource folder.
+ * <p/>
+ * Drools also treats a rule of which only the order of the constraints changed as a changed rule, and rebuilds its network nodes. With
+ * {@link #setPreserveRulesOnConstraintReorder(boolean)} enabled, such a rule, i.e. a rule with the same canonical hash as the rule with the
+ * same name in the previous version (see {@link DrlRuleFingerprinter}), is deployed with the source of the previous version, so Drools
+ * sees an unchanged rule and keeps its nodes and memories.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class IncrementalKieJarBuilder {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IncrementalKieJarBuilder.class);
+
+	private static final String RESOURCES_PATH = "src/main/resources/";
+
+	private static final String DRL_EXTENSION = ".drl";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final KieServices kieServices;
+
+	private final KieModuleModel kieModuleModel;
+
+	private final DrlRuleFingerprinter fingerprinter = new DrlRuleFingerprinter();
+
+	private KieFileSystem kieFileSystem;
+
+	private KieBuilder kieBuilder;
+
+	private Map<String, String> resourceDigests = Collections.emptyMap();
+
+	private List<String> lastCompiledResources = Collections.emptyList();
+
+	private boolean preserveRulesOnResourceRename = false;
+
+	private boolean preserveRulesOnConstraintReorder = false;
+
+	/**
+	 * The path under which each resource is deployed, keyed by the path it is provided under.
+	 */
+	private Map<String, String> deployedPaths = Collections.emptyMap();
+
+	private Map<String, List<RuleFingerprint>> ruleFingerprints = Collections.emptyMap();
+
+	private Map<String, String> drlSources = Collections.emptyMap();
+
+	private RuleDiff lastRuleDiff;
+
+	private long lastLayoutNanos;
+
+	private long lastDiffNanos;
+
+	private long lastCompileNanos;
+
+	public IncrementalKieJarBuilder(KieServices kieServices, KieModuleModel kieModuleModel) {
+		this.kieServices = kieServices;
+		this.kieModuleModel = kieModuleModel;
+	}
+
+	/**
+	 * Builds the next version of the KJAR.
+	 * 
+	 * @param releaseId
+	 *            the {@link ReleaseId} of the new version.
+	 * @param resources
+	 *            all resources of the new version, keyed by their path relative to <code>src/main/resources</code>.
+	 * @return the new version.
+	 * @throws IllegalStateException
+	 *             if the new version doesn't build.
+	 */
+	public synchronized InternalKieModule build(ReleaseId releaseId, Map<String, Resource> resources) {
+		long layoutStartTime = System.nanoTime();
+		VersionLayout layout = layout(resources);
+		lastLayoutNanos = System.nanoTime() - layoutStartTime;
+		return build(releaseId, layout);
+	}
+
+	/**
+	 * Builds a bridge version for the rules that are renamed in the next version, i.e. rules that only differ in name from a rule that is
+	 * removed in the next version. The bridge version contains the next version's resources, plus the source of every rule it renames. When
+	 * the bridge is deployed before the next version, the renamed rules are added to the KieBase while the original rules are still there,
+	 * so they share the original rules' network nodes, including accumulate nodes with their memory and current result. The next version
+	 * then only removes the original rules.
+	 * <p/>
+	 * Only rules that are renamed within the same deployed resource are bridged. Drools treats a rule that moves to another resource as a
+	 * removed and an added rule, and removes it before the rules of the other resource are added, so the original rule's memory would be
+	 * lost anyway. With {@link #setPreserveRulesOnResourceRename(boolean)} enabled, a renamed DRL is deployed under the path of the
+	 * original DRL, so its renamed rules can be bridged.
+	 * 
+	 * @param bridgeReleaseId
+	 *            the {@link ReleaseId} of the bridge version.
+	 * @param resources
+	 *            all resources of the next version, keyed by their path relative to <code>src/main/resources</code>.
+	 * @return the bridge version, or <code>null</code> if the next version doesn't rename any rules within the same resource.
+	 * @throws IllegalStateException
+	 *             if the bridge version doesn't build.
+	 */
+	public synchronized InternalKieModule buildRenameBridge(ReleaseId bridgeReleaseId, Map<String, Resource> resources) {
+		long layoutStartTime = System.nanoTime();
+		VersionLayout layout = layout(resources);
+		lastLayoutNanos = System.nanoTime() - layoutStartTime;
+		Map<RuleFingerprint, RuleFingerprint> renamedRules = RuleDiff.compute(ruleFingerprints, layout.fingerprints).getRenamedRules();
+		if (renamedRules.isEmpty()) {
+			return null;
+		}
+		int bridgedRules = 0;
+		for (Map.Entry<RuleFingerprint, RuleFingerprint> nextRename : renamedRules.entrySet()) {
+			String originalPath = findPath(ruleFingerprints, nextRename.getKey());
+			String renamedPath = findPath(layout.fingerprints, nextRename.getValue());
+			if (!originalPath.equals(renamedPath)) {
+				LOGGER.debug("Renamed rule '{}' is deployed in '{}' instead of '{}', it will not be bridged.",
+						nextRename.getValue().getRuleId(), renamedPath, originalPath);
+				continue;
+			}
+			String originalRuleSource = fingerprinter.getRuleSource(drlSources.get(originalPath), nextRename.getKey().getRuleName());
+			if (originalRuleSource == null) {
+				LOGGER.debug("No source found for renamed rule '{}', it will not be bridged.", nextRename.getKey().getRuleId());
+				continue;
+			}
+			String bridgedDrl = new String(layout.contents.get(renamedPath), UTF_8) + "\n\n" + originalRuleSource + "\n";
+			layout.put(renamedPath, bridgedDrl.getBytes(UTF_8), fingerprinter.fingerprint(bridgedDrl));
+			bridgedRules++;
+		}
+		return (bridgedRules == 0) ? null : build(bridgeReleaseId, layout);
+	}
+
+	private InternalKieModule build(ReleaseId releaseId, VersionLayout layout) {
+		long diffStartTime = System.nanoTime();
+		RuleDiff ruleDiff = RuleDiff.compute(ruleFingerprints, layout.fingerprints);
+		long compileStartTime = System.nanoTime();
+
+		List<String> changedResources = new ArrayList<>();
+		if (kieBuilder == null) {
+			buildAll(releaseId, layout.contents);
+			changedResources.addAll(layout.contents.keySet());
+		} else {
+			for (Map.Entry<String, byte[]> nextContent : layout.contents.entrySet()) {
+				String path = nextContent.getKey();
+				if (!layout.digests.get(path).equals(resourceDigests.get(path))) {
+					kieFileSystem.write(path, nextContent.getValue());
+					changedResources.add(path);
+				}
+			}
+			for (String nextPath : resourceDigests.keySet()) {
+				if (!layout.contents.containsKey(nextPath)) {
+					kieFileSystem.delete(nextPath);
+					changedResources.add(nextPath);
+				}
+			}
+			kieFileSystem.generateAndWritePomXML(releaseId);
+			if (!changedResources.isEmpty()) {
+				buildIncremental(changedResources);
+			}
+		}
+		resourceDigests = layout.digests;
+		deployedPaths = layout.paths;
+		ruleFingerprints = layout.fingerprints;
+		drlSources = layout.getDrlSources();
+		lastCompiledResources = Collections.unmodifiableList(changedResources);
+		lastRuleDiff = ruleDiff;
+		lastDiffNanos = compileStartTime - diffStartTime;
+		lastCompileNanos = System.nanoTime() - compileStartTime;
+		LOGGER.debug("Built '{}', compiled resources: {}, rules: {}", releaseId, changedResources, ruleDiff);
+
+		return copyOf(releaseId, (InternalKieModule) kieBuilder.getKieModule());
+	}
+
+	/**
+	 * Reads, fingerprints and assigns a deployed path to all provided resources.
+	 */
+	private VersionLayout layout(Map<String, Resource> resources) {
+		Map<String, byte[]> providedContents = new HashMap<>();
+		Map<String, List<RuleFingerprint>> providedFingerprints = new HashMap<>();
+		for (Map.Entry<String, Resource> nextResource : resources.entrySet()) {
+			String path = RESOURCES_PATH + nextResource.getKey();
+			byte[] content = readFully(nextResource.getValue());
+			if (path.endsWith(DRL_EXTENSION)) {
+				String drl = new String(content, UTF_8);
+				List<RuleFingerprint> fingerprints = fingerprinter.fingerprint(drl);
+				if (preserveRulesOnConstraintReorder) {
+					String restoredDrl = restoreReorderedRules(drl, fingerprints);
+					if (!restoredDrl.equals(drl)) {
+						content = restoredDrl.getBytes(UTF_8);
+						fingerprints = fingerprinter.fingerprint(restoredDrl);
+					}
+				}
+				providedFingerprints.put(path, fingerprints);
+			}
+			providedContents.put(path, content);
+		}
+
+		VersionLayout layout = new VersionLayout(assignDeployedPaths(providedContents.keySet(), providedFingerprints));
+		for (Map.Entry<String, byte[]> nextContent : providedContents.entrySet()) {
+			layout.put(layout.paths.get(nextContent.getKey()), nextContent.getValue(), providedFingerprints.get(nextContent.getKey()));
+		}
+		return layout;
+	}
+
+	/**
+	 * Replaces the source of every rule that only differs in the order of its constraints from the rule with the same name in the previous
+	 * version with the source of the previous version. The DRL and every previous DRL a reordered rule comes from are parsed once, the
+	 * rule sources of the DRL are then replaced in a single pass in the order of the DRL.
+	 */
+	private String restoreReorderedRules(String drl, List<RuleFingerprint> fingerprints) {
+		Map<String, String> previousRuleSources = new HashMap<>();
+		Map<String, Map<String, String>> previousDrlRuleSources = new HashMap<>();
+		for (RuleFingerprint nextFingerprint : fingerprints) {
+			RuleFingerprint previousFingerprint = findPreviousFingerprint(nextFingerprint.getRuleId());
+			boolean isReordered = previousFingerprint != null
+					&& !previousFingerprint.getContentHash().equals(nextFingerprint.getContentHash())
+					&& previousFingerprint.getCanonicalHash().equals(nextFingerprint.getCanonicalHash());
+			if (!isReordered) {
+				continue;
+			}
+			String previousPath = findPath(ruleFingerprints, previousFingerprint);
+			Map<String, String> ruleSources = previousDrlRuleSources.get(previousPath);
+			if (ruleSources == null) {
+				ruleSources = fingerprinter.getRuleSources(drlSources.get(previousPath));
+				previousDrlRuleSources.put(previousPath, ruleSources);
+			}
+			String previousRuleSource = ruleSources.get(previousFingerprint.getRuleName());
+			if (previousRuleSource == null) {
+				LOGGER.debug("No source found for reordered rule '{}', it will not be preserved.", nextFingerprint.getRuleId());
+				continue;
+			}
+			previousRuleSources.put(nextFingerprint.getRuleName(), previousRuleSource);
+		}
+		if (previousRuleSources.isEmpty()) {
+			return drl;
+		}
+
+		StringBuilder restoredDrl = new StringBuilder(drl.length());
+		int copiedIndex = 0;
+		for (Map.Entry<String, String> nextRuleSource : fingerprinter.getRuleSources(drl).entrySet()) {
+			String previousRuleSource = previousRuleSources.remove(nextRuleSource.getKey());
+			if (previousRuleSource == null) {
+				continue;
+			}
+			// The rule sources are in the order of the DRL, so the source is searched from the end of the previous rule source.
+			int ruleIndex = drl.indexOf(nextRuleSource.getValue(), copiedIndex);
+			restoredDrl.append(drl, copiedIndex, ruleIndex).append(previousRuleSource);
+			copiedIndex = ruleIndex + nextRuleSource.getValue().length();
+			LOGGER.debug("Rule '{}' only has reordered constraints, deploying its previous source.", nextRuleSource.getKey());
+		}
+		for (String nextRuleName : previousRuleSources.keySet()) {
+			LOGGER.debug("No source found for reordered rule '{}', it will not be preserved.", nextRuleName);
+		}
+		return restoredDrl.append(drl, copiedIndex, drl.length()).toString();
+	}
+
+	private RuleFingerprint findPreviousFingerprint(String ruleId) {
+		for (List<RuleFingerprint> nextFingerprints : ruleFingerprints.values()) {
+			for (RuleFingerprint nextFingerprint : nextFingerprints) {
+				if (nextFingerprint.getRuleId().equals(ruleId)) {
+					return nextFingerprint;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static String findPath(Map<String, List<RuleFingerprint>> fingerprints, RuleFingerprint fingerprint) {
+		for (Map.Entry<String, List<RuleFingerprint>> nextResource : fingerprints.entrySet()) {
+			if (nextResource.getValue().contains(fingerprint)) {
+				return nextResource.getKey();
+			}
+		}
+		throw new IllegalStateException("No resource found for rule: " + fingerprint);
+	}
+
+	/**
+	 * Enables or disables deploying renamed or moved DRLs under the path of the DRL they replace.
+	 */
+	public synchronized void setPreserveRulesOnResourceRename(boolean preserveRulesOnResourceRename) {
+		this.preserveRulesOnResourceRename = preserveRulesOnResourceRename;
+	}
+
+	/**
+	 * Enables or disables deploying rules that only differ in the order of their constraints with the source of the previous version.
+	 */
+	public synchronized void setPreserveRulesOnConstraintReorder(boolean preserveRulesOnConstraintReorder) {
+		this.preserveRulesOnConstraintReorder = preserveRulesOnConstraintReorder;
+	}
+
+	/**
+	 * @return the rule level diff between the last two versions built, or <code>null</code> if nothing has been built yet.
+	 */
+	public synchronized RuleDiff getLastRuleDiff() {
+		return lastRuleDiff;
+	}
+
+	/**
+	 * @return the time, in nanoseconds, the last build spent on reading, parsing and fingerprinting the resources and assigning their deployed
+	 *         paths.
+	 */
+	public synchronized long getLastLayoutNanos() {
+		return lastLayoutNanos;
+	}
+
+	/**
+	 * @return the time, in nanoseconds, the last build spent on computing the rule level diff against the previous version's fingerprints.
+	 *         This is the builder's own diff, not the KieBase diff Drools computes in
+	 *         {@link org.kie.api.runtime.KieContainer#updateToVersion(ReleaseId)}.
+	 */
+	public synchronized long getLastDiffNanos() {
+		return lastDiffNanos;
+	}
+
+	/**
+	 * @return the time, in nanoseconds, the last build spent on compiling the changed resources.
+	 */
+	public synchronized long getLastCompileNanos() {
+		return lastCompileNanos;
+	}
+
+	/**
+	 * Determines the path under which every provided resource is deployed. Resources keep the path they were deployed under in the previous
+	 * version. When enabled, a new DRL takes over the path of the removed DRL it shares most unchanged rules with. A new resource of which
+	 * the path is taken by a renamed resource is deployed under a free path with a numeric suffix.
+	 */
+	private Map<String, String> assignDeployedPaths(Set<String> providedPaths, Map<String, List<RuleFingerprint>> providedFingerprints) {
+		Map<String, String> paths = new HashMap<>();
+		Set<String> claimedPaths = new HashSet<>();
+		List<String> newPaths = new ArrayList<>();
+		for (String nextPath : providedPaths) {
+			String deployedPath = deployedPaths.get(nextPath);
+			if (deployedPath != null) {
+				paths.put(nextPath, deployedPath);
+				claimedPaths.add(deployedPath);
+			} else {
+				newPaths.add(nextPath);
+			}
+		}
+		// Sorted, so the assignment doesn't depend on the iteration order of the provided resources.
+		Collections.sort(newPaths);
+		for (String nextPath : newPaths) {
+			String deployedPath = preserveRulesOnResourceRename ? findReplacedPath(providedFingerprints.get(nextPath), claimedPaths) : null;
+			if (deployedPath == null) {
+				deployedPath = nextPath;
+			}
+			if (claimedPaths.contains(deployedPath)) {
+				// A renamed resource is still deployed under the path of this new resource.
+				deployedPath = findFreePath(deployedPath, claimedPaths, providedPaths);
+			}
+			claimedPaths.add(deployedPath);
+			paths.put(nextPath, deployedPath);
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns the given path with the lowest numeric suffix, e.g. <code>rules-1.drl</code>, that is not claimed in this version, not
+	 * provided in this version and not deployed in the previous version.
+	 */
+	private String findFreePath(String path, Set<String> claimedPaths, Set<String> providedPaths) {
+		int extensionIndex = path.lastIndexOf('.');
+		if (extensionIndex < path.lastIndexOf('/')) {
+			extensionIndex = path.length();
+		}
+		for (int counter = 1;; counter++) {
+			String freePath = path.substring(0, extensionIndex) + "-" + counter + path.substring(extensionIndex);
+			if (!claimedPaths.contains(freePath) && !providedPaths.contains(freePath) && !resourceDigests.containsKey(freePath)) {
+				return freePath;
+			}
+		}
+	}
+
+	private String findReplacedPath(List<RuleFingerprint> fingerprints, Set<String> claimedPaths) {
+		if (fingerprints == null || fingerprints.isEmpty()) {
+			return null;
+		}
+		String replacedPath = null;
+		int maxSharedRules = 0;
+		for (Map.Entry<String, List<RuleFingerprint>> nextResource : ruleFingerprints.entrySet()) {
+			if (claimedPaths.contains(nextResource.getKey())) {
+				continue;
+			}
+			int sharedRules = 0;
+			for (RuleFingerprint nextFingerprint : nextResource.getValue()) {
+				if (fingerprints.contains(nextFingerprint)) {
+					sharedRules++;
+				}
+			}
+			boolean isBetterMatch = sharedRules > maxSharedRules
+					|| (sharedRules > 0 && sharedRules == maxSharedRules && nextResource.getKey().compareTo(replacedPath) < 0);
+			if (isBetterMatch) {
+				maxSharedRules = sharedRules;
+				replacedPath = nextResource.getKey();
+			}
+		}
+		return replacedPath;
+	}
+
+	/**
+	 * @return the deployed paths of the resources that were compiled (or removed) by the last build.
+	 */
+	public synchronized List<String> getLastCompiledResources() {
+		return lastCompiledResources;
+	}
+
+	private void buildAll(ReleaseId releaseId, Map<String, byte[]> contents) {
+		kieFileSystem = kieServices.newKieFileSystem();
+		kieFileSystem.writeKModuleXML(kieModuleModel.toXML());
+		kieFileSystem.generateAndWritePomXML(releaseId);
+		for (Map.Entry<String, byte[]> nextContent : contents.entrySet()) {
+			kieFileSystem.write(nextContent.getKey(), nextContent.getValue());
+		}
+		kieBuilder = kieServices.newKieBuilder(kieFileSystem);
+		List<Message> errors = kieBuilder.buildAll().getResults().getMessages(Message.Level.ERROR);
+		if (!errors.isEmpty()) {
+			reset();
+			throw new IllegalStateException("Error building KJAR '" + releaseId + "': " + errors);
+		}
+	}
+
+	private void buildIncremental(List<String> changedResources) {
+		IncrementalResults results = ((InternalKieBuilder) kieBuilder).createFileSet(
+				changedResources.toArray(new String[changedResources.size()])).build();
+		List<Message> errors = new ArrayList<>();
+		for (Message nextMessage : results.getAddedMessages()) {
+			if (nextMessage.getLevel() == Message.Level.ERROR) {
+				errors.add(nextMessage);
+			}
+		}
+		if (!errors.isEmpty()) {
+			reset();
+			throw new IllegalStateException("Error building changed resources " + changedResources + ": " + errors);
+		}
+	}
+
+	private void reset() {
+		kieFileSystem = null;
+		kieBuilder = null;
+		resourceDigests = Collections.emptyMap();
+		deployedPaths = Collections.emptyMap();
+		ruleFingerprints = Collections.emptyMap();
+		drlSources = Collections.emptyMap();
+	}
+
+	/**
+	 * Copies the files of the built module, with a <code>pom.properties</code> for the given {@link ReleaseId} (the incremental build only
+	 * rewrites the <code>pom.xml</code>). The copy doesn't share the compiled packages of the {@link KieBuilder}, which the next incremental
+	 * build changes.
+	 */
+	private InternalKieModule copyOf(ReleaseId releaseId, InternalKieModule kieModule) {
+		MemoryFileSystem memoryFileSystem = MemoryFileSystem.readFromJar(((MemoryKieModule) kieModule).getMemoryFileSystem().writeAsBytes());
+		String pomProperties = "groupId=" + releaseId.getGroupId() + "\nartifactId=" + releaseId.getArtifactId() + "\nversion="
+				+ releaseId.getVersion() + "\n";
+		memoryFileSystem.write(getPomPropertiesPath(releaseId), pomProperties.getBytes(UTF_8), true);
+
+		return new MemoryKieModule(releaseId, kieModuleModel, memoryFileSystem);
+	}
+
+	private static String getPomPropertiesPath(ReleaseId releaseId) {
+		return "META-INF/maven/" + releaseId.getGroupId() + "/" + releaseId.getArtifactId() + "/pom.properties";
+	}
+
+	private static byte[] readFully(Resource resource) {
+		try (InputStream in = resource.getInputStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} catch (IOException ioe) {
+			throw new IllegalStateException("Error reading resource: " + resource, ioe);
+		}
+	}
+
+	private static String digest(byte[] content) {
+		try {
+			return new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(content)).toString(16);
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("SHA-1 is not available.", nsae);
+		}
+	}
+
+	/**
+	 * The resources of a version, keyed by the path they're deployed under.
+	 */
+	private static class VersionLayout {
+
+		private final Map<String, String> paths;
+
+		private final Map<String, byte[]> contents = new HashMap<>();
+
+		private final Map<String, String> digests = new HashMap<>();
+
+		private final Map<String, List<RuleFingerprint>> fingerprints = new HashMap<>();
+
+		private VersionLayout(Map<String, String> paths) {
+			this.paths = paths;
+		}
+
+		private void put(String path, byte[] content, List<RuleFingerprint> ruleFingerprints) {
+			contents.put(path, content);
+			digests.put(path, digest(content));
+			if (ruleFingerprints != null) {
+				fingerprints.put(path, ruleFingerprints);
+			}
+		}
+
+		private Map<String, String> getDrlSources() {
+			Map<String, String> drlSources = new HashMap<>();
+			for (String nextPath : fingerprints.keySet()) {
+				drlSources.put(nextPath, new String(contents.get(nextPath), UTF_8));
+			}
+			return drlSources;
+		}
+	}
+
+}
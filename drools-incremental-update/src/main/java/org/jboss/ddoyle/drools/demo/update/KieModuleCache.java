@@ -0,0 +1,193 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.kie.api.builder.KieRepository;
+import org.kie.api.builder.ReleaseId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deploys KJARs to a {@link KieRepository} and bounds the number of versions the repository retains.
+ * <p/>
+ * The {@link KieRepository} keeps every {@link InternalKieModule} that is added to it, including its resources and compiled packages, for
+ * the lifetime of the JVM. This cache tracks the modules it deploys in least recently used order, and removes the least recently used
+ * modules from the repository when more than the maximum number of modules are deployed. Modules that are in use by a container must be
+ * pinned, as {@link org.kie.api.runtime.KieContainer#updateToVersion(ReleaseId)} needs the module of the current version.
+ * <p/>
+ * Modules are identified by a content hash over their files, excluding the Maven metadata that contains their {@link ReleaseId}. Deploying
+ * a module with the same {@link ReleaseId} and content as a cached module returns the cached module, which already has its packages
+ * compiled, instead of replacing it.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class KieModuleCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(KieModuleCache.class);
+
+	private static final String MAVEN_METADATA_PREFIX = "META-INF/maven/";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final KieRepository kieRepository;
+
+	private final int maxModules;
+
+	/**
+	 * The deployed modules, in least recently used order.
+	 */
+	private final LinkedHashMap<ReleaseId, CachedModule> modules = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final Set<ReleaseId> pinnedReleaseIds = new HashSet<>();
+
+	private long deduplicatedModules;
+
+	private long evictedModules;
+
+	/**
+	 * @param kieRepository
+	 *            the repository to deploy the modules to.
+	 * @param maxModules
+	 *            the maximum number of modules to retain, pinned modules included.
+	 */
+	public KieModuleCache(KieRepository kieRepository, int maxModules) {
+		if (maxModules < 1) {
+			throw new IllegalArgumentException("Maximum number of modules must be at least 1, got: " + maxModules);
+		}
+		this.kieRepository = kieRepository;
+		this.maxModules = maxModules;
+	}
+
+	/**
+	 * Deploys the module to the repository, unless a module with the same {@link ReleaseId} and content has already been deployed, and
+	 * evicts the least recently used modules that are not pinned.
+	 *
+	 * @return the deployed module, which is the previously deployed module when the content is the same.
+	 */
+	public synchronized InternalKieModule deploy(InternalKieModule kieModule) {
+		ReleaseId releaseId = kieModule.getReleaseId();
+		String contentHash = contentHash(kieModule);
+		CachedModule cachedModule = modules.get(releaseId);
+		if (cachedModule != null && cachedModule.contentHash.equals(contentHash)) {
+			deduplicatedModules++;
+			LOGGER.debug("Module '{}' has already been deployed with the same content.", releaseId);
+			return cachedModule.kieModule;
+		}
+		kieRepository.addKieModule(kieModule);
+		modules.put(releaseId, new CachedModule(kieModule, contentHash));
+		evict(releaseId);
+		return kieModule;
+	}
+
+	/**
+	 * Marks the module as most recently used, e.g. when a container is updated to it.
+	 */
+	public synchronized void touch(ReleaseId releaseId) {
+		modules.get(releaseId);
+	}
+
+	/**
+	 * Prevents the module from being evicted, e.g. because a container runs on it.
+	 */
+	public synchronized void pin(ReleaseId releaseId) {
+		pinnedReleaseIds.add(releaseId);
+		modules.get(releaseId);
+	}
+
+	/**
+	 * Allows the module to be evicted again. The module is evicted by the next {@link #deploy(InternalKieModule)} if it is least recently
+	 * used.
+	 */
+	public synchronized void unpin(ReleaseId releaseId) {
+		pinnedReleaseIds.remove(releaseId);
+	}
+
+	public synchronized boolean contains(ReleaseId releaseId) {
+		return modules.containsKey(releaseId);
+	}
+
+	/**
+	 * @return the {@link ReleaseId ReleaseIds} of the cached modules, least recently used first.
+	 */
+	public synchronized List<ReleaseId> getReleaseIds() {
+		return new ArrayList<>(modules.keySet());
+	}
+
+	/**
+	 * @return the number of deployments that returned a previously deployed module.
+	 */
+	public synchronized long getDeduplicatedModules() {
+		return deduplicatedModules;
+	}
+
+	/**
+	 * @return the number of modules removed from the repository.
+	 */
+	public synchronized long getEvictedModules() {
+		return evictedModules;
+	}
+
+	private void evict(ReleaseId deployedReleaseId) {
+		for (Iterator<ReleaseId> releaseIds = modules.keySet().iterator(); releaseIds.hasNext() && modules.size() > maxModules;) {
+			ReleaseId nextReleaseId = releaseIds.next();
+			if (!nextReleaseId.equals(deployedReleaseId) && !pinnedReleaseIds.contains(nextReleaseId)) {
+				releaseIds.remove();
+				kieRepository.removeKieModule(nextReleaseId);
+				evictedModules++;
+				LOGGER.debug("Evicted module '{}'.", nextReleaseId);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the names and contents of the files of the module, in name order, except for the Maven metadata.
+	 */
+	private static String contentHash(InternalKieModule kieModule) {
+		List<String> fileNames = new ArrayList<>(kieModule.getFileNames());
+		Collections.sort(fileNames);
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException("SHA-1 is not available.", nsae);
+		}
+		for (String nextFileName : fileNames) {
+			if (nextFileName.startsWith(MAVEN_METADATA_PREFIX)) {
+				continue;
+			}
+			byte[] content = kieModule.getBytes(nextFileName);
+			if (content == null) {
+				// A folder.
+				continue;
+			}
+			digest.update(nextFileName.getBytes(UTF_8));
+			digest.update((byte) 0);
+			digest.update(content);
+		}
+		return new BigInteger(1, digest.digest()).toString(16);
+	}
+
+	private static class CachedModule {
+
+		private final InternalKieModule kieModule;
+
+		private final String contentHash;
+
+		private CachedModule(InternalKieModule kieModule, String contentHash) {
+			this.kieModule = kieModule;
+			this.contentHash = contentHash;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rule level diff between two versions of a KJAR. Rules are matched on package and name and compared on their content hash, independent of
+ * the resource they are defined in.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class RuleDiff {
+
+	private final List<RuleFingerprint> addedRules = new ArrayList<>();
+
+	private final List<RuleFingerprint> removedRules = new ArrayList<>();
+
+	private final List<RuleFingerprint> changedRules = new ArrayList<>();
+
+	private final List<RuleFingerprint> unchangedRules = new ArrayList<>();
+
+	private final List<RuleFingerprint> movedRules = new ArrayList<>();
+
+	private RuleDiff() {
+	}
+
+	/**
+	 * Computes the diff between two versions.
+	 * 
+	 * @param previousRules
+	 *            the fingerprints of the rules of the previous version, keyed by resource path.
+	 * @param currentRules
+	 *            the fingerprints of the rules of the current version, keyed by resource path.
+	 */
+	public static RuleDiff compute(Map<String, List<RuleFingerprint>> previousRules, Map<String, List<RuleFingerprint>> currentRules) {
+		Map<String, RuleFingerprint> previousFingerprints = new HashMap<>();
+		Map<String, String> previousPaths = new HashMap<>();
+		for (Map.Entry<String, List<RuleFingerprint>> nextResource : previousRules.entrySet()) {
+			for (RuleFingerprint nextFingerprint : nextResource.getValue()) {
+				previousFingerprints.put(nextFingerprint.getRuleId(), nextFingerprint);
+				previousPaths.put(nextFingerprint.getRuleId(), nextResource.getKey());
+			}
+		}
+
+		RuleDiff diff = new RuleDiff();
+		for (Map.Entry<String, List<RuleFingerprint>> nextResource : currentRules.entrySet()) {
+			for (RuleFingerprint nextFingerprint : nextResource.getValue()) {
+				RuleFingerprint previousFingerprint = previousFingerprints.remove(nextFingerprint.getRuleId());
+				if (previousFingerprint == null) {
+					diff.addedRules.add(nextFingerprint);
+				} else if (!previousFingerprint.equals(nextFingerprint)) {
+					diff.changedRules.add(nextFingerprint);
+				} else if (nextResource.getKey().equals(previousPaths.get(nextFingerprint.getRuleId()))) {
+					diff.unchangedRules.add(nextFingerprint);
+				} else {
+					diff.movedRules.add(nextFingerprint);
+				}
+			}
+		}
+		diff.removedRules.addAll(previousFingerprints.values());
+		return diff;
+	}
+
+	/**
+	 * @return the rules that are new in the current version.
+	 */
+	public List<RuleFingerprint> getAddedRules() {
+		return Collections.unmodifiableList(addedRules);
+	}
+
+	/**
+	 * @return the rules that are no longer part of the current version.
+	 */
+	public List<RuleFingerprint> getRemovedRules() {
+		return Collections.unmodifiableList(removedRules);
+	}
+
+	/**
+	 * @return the rules of which the content changed, as they are in the current version.
+	 */
+	public List<RuleFingerprint> getChangedRules() {
+		return Collections.unmodifiableList(changedRules);
+	}
+
+	/**
+	 * @return the rules that didn't change and are still defined in the same resource.
+	 */
+	public List<RuleFingerprint> getUnchangedRules() {
+		return Collections.unmodifiableList(unchangedRules);
+	}
+
+	/**
+	 * @return the rules that didn't change, but are defined in a different resource. Drools treats these as new rules, unless their new
+	 *         resource is deployed under the path of their previous resource.
+	 */
+	public List<RuleFingerprint> getMovedRules() {
+		return Collections.unmodifiableList(movedRules);
+	}
+
+	/**
+	 * Matches the removed rules with the added rules that have the same package and content, i.e. rules that have only been renamed. Every
+	 * rule is matched at most once.
+	 * 
+	 * @return the added rules that rename a removed rule, keyed by the removed rule.
+	 */
+	public Map<RuleFingerprint, RuleFingerprint> getRenamedRules() {
+		Map<RuleFingerprint, RuleFingerprint> renamedRules = new LinkedHashMap<>();
+		List<RuleFingerprint> unmatchedRules = new ArrayList<>(addedRules);
+		for (RuleFingerprint nextRemovedRule : removedRules) {
+			for (Iterator<RuleFingerprint> addedRulesIterator = unmatchedRules.iterator(); addedRulesIterator.hasNext();) {
+				RuleFingerprint nextAddedRule = addedRulesIterator.next();
+				if (nextAddedRule.getPackageName().equals(nextRemovedRule.getPackageName())
+						&& nextAddedRule.getContentHash().equals(nextRemovedRule.getContentHash())) {
+					renamedRules.put(nextRemovedRule, nextAddedRule);
+					addedRulesIterator.remove();
+					break;
+				}
+			}
+		}
+		return renamedRules;
+	}
+
+	@Override
+	public String toString() {
+		return "RuleDiff [added=" + addedRules + ", removed=" + removedRules + ", changed=" + changedRules + ", moved=" + movedRules
+				+ ", unchanged=" + unchangedRules.size() + "]";
+	}
+
+}
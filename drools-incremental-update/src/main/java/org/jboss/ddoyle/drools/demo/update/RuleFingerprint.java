@@ -0,0 +1,89 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+/**
+ * Identifies a rule by its package and name, and its content by a hash of its normalized source, i.e. its attributes, LHS and RHS without
+ * comments, whitespace and the rule name. The canonical hash of a rule is also independent of the order of its literal constraints (see
+ * {@link DrlRuleFingerprinter}).
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class RuleFingerprint {
+
+	private final String packageName;
+
+	private final String ruleName;
+
+	private final String contentHash;
+
+	private final String canonicalHash;
+
+	public RuleFingerprint(String packageName, String ruleName, String contentHash) {
+		this(packageName, ruleName, contentHash, contentHash);
+	}
+
+	public RuleFingerprint(String packageName, String ruleName, String contentHash, String canonicalHash) {
+		this.packageName = packageName;
+		this.ruleName = ruleName;
+		this.contentHash = contentHash;
+		this.canonicalHash = canonicalHash;
+	}
+
+	public String getPackageName() {
+		return packageName;
+	}
+
+	public String getRuleName() {
+		return ruleName;
+	}
+
+	/**
+	 * @return the fully qualified name of the rule, in the same '<code>package-name</code>' format the tests use.
+	 */
+	public String getRuleId() {
+		return packageName + "-" + ruleName;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * @return the hash of the canonical form of the rule, which is equal for rules that only differ in the order of their literal
+	 *         constraints.
+	 */
+	public String getCanonicalHash() {
+		return canonicalHash;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((contentHash == null) ? 0 : contentHash.hashCode());
+		result = prime * result + ((packageName == null) ? 0 : packageName.hashCode());
+		result = prime * result + ((ruleName == null) ? 0 : ruleName.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		RuleFingerprint other = (RuleFingerprint) obj;
+		return equals(packageName, other.packageName) && equals(ruleName, other.ruleName) && equals(contentHash, other.contentHash);
+	}
+
+	private static boolean equals(String first, String second) {
+		return (first == null) ? second == null : first.equals(second);
+	}
+
+	@Override
+	public String toString() {
+		return getRuleId() + "@" + contentHash;
+	}
+
+}
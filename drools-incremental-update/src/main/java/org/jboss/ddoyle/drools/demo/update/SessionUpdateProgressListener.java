@@ -0,0 +1,34 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import org.kie.api.builder.Results;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Receives the progress of a {@link FanOutSessionUpdater} update. The session callbacks are called from the threads that update the
+ * sessions, so implementations must be thread-safe.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public interface SessionUpdateProgressListener {
+
+	/**
+	 * Called when the KieBase has been updated, before the sessions are caught up.
+	 */
+	public abstract void kieBaseUpdated(Results results, long updateNanos);
+
+	/**
+	 * Called when a session has been caught up with the new version of the KieBase.
+	 *
+	 * @param completed
+	 *            the number of sessions that have been caught up or failed so far, including this one.
+	 * @param total
+	 *            the number of sessions to update.
+	 */
+	public abstract void sessionUpdated(KieSession kieSession, int rulesFired, int completed, int total);
+
+	/**
+	 * Called when catching up a session failed.
+	 */
+	public abstract void sessionFailed(KieSession kieSession, Throwable cause, int completed, int total);
+
+}
@@ -0,0 +1,155 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.compiler.kie.builder.impl.KieContainerImpl;
+import org.drools.compiler.kie.builder.impl.KieModuleKieProject;
+import org.kie.api.KieServices;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Updates a {@link KieContainer}, and the sessions created from it, in two steps:
+ * <ol>
+ * <li>{@link #prepare(Callable, ShadowSessionWarmer)} builds the new KJAR and builds a shadow KieBase from it on the given executor, without
+ * deploying the KJAR to the repository. The shadow KieBase is verified and, optionally, warmed up with a throw-away session. A KJAR that
+ * doesn't build is rejected here, without touching the live container or the module the repository holds for its {@link ReleaseId}. The
+ * shadow container is disposed when the preparation is done.</li>
+ * <li>{@link PreparedUpdate#cutOver()} deploys the prepared KJAR to the repository and applies it to the live container with
+ * {@link KieContainer#updateToVersion(ReleaseId)}. This must be called from the thread that owns the container's sessions.</li>
+ * </ol>
+ * The pause of the live sessions is the cut-over. The preparation takes the build of the KJAR, the compilation of all its packages, the
+ * verification, and the class loading and JIT compilation of the compiler and engine code paths that the new rules exercise off that pause.
+ * What remains in the pause is what {@link KieContainer#updateToVersion(ReleaseId)} does on the live KieBase: Drools can't re-attach a
+ * running session to a different KieBase without losing the incremental update semantics (i.e. unchanged rules don't re-fire), so the
+ * changed resources are compiled once more against the live KieBase and the rules of the changed resources are removed and added. The
+ * <code>shadowPrepared</code> parameter of the <code>UpdateToVersionBenchmark</code> compares the pause with and without the preparation.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class ShadowKieBaseUpdater {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShadowKieBaseUpdater.class);
+
+	private final KieServices kieServices;
+
+	private final KieContainer kieContainer;
+
+	private final ExecutorService executor;
+
+	public ShadowKieBaseUpdater(KieServices kieServices, KieContainer kieContainer, ExecutorService executor) {
+		this.kieServices = kieServices;
+		this.kieContainer = kieContainer;
+		this.executor = executor;
+	}
+
+	/**
+	 * Prepares the update on the executor of this updater.
+	 * 
+	 * @param kieModuleBuilder
+	 *            builds the new KJAR.
+	 * @param warmer
+	 *            warms up the shadow KieBase, can be <code>null</code>.
+	 * @return the {@link PreparedUpdate}. The future fails with an {@link IllegalStateException} when the new KJAR doesn't build.
+	 */
+	public Future<PreparedUpdate> prepare(final Callable<InternalKieModule> kieModuleBuilder, final ShadowSessionWarmer warmer) {
+		return executor.submit(new Callable<PreparedUpdate>() {
+			@Override
+			public PreparedUpdate call() throws Exception {
+				long start = System.nanoTime();
+
+				InternalKieModule kieModule = kieModuleBuilder.call();
+				ReleaseId releaseId = kieModule.getReleaseId();
+
+				// Build the shadow KieBases from the new KJAR, this compiles all its packages. The KJAR is not added to the repository, so a
+				// KJAR that doesn't build never replaces the module of the same ReleaseId that the live container uses.
+				KieContainer shadowContainer = new KieContainerImpl(new KieModuleKieProject(kieModule), kieServices.getRepository());
+				try {
+					Results results = shadowContainer.verify();
+					if (results.hasMessages(Message.Level.ERROR)) {
+						throw new IllegalStateException("Error building shadow KieBase for '" + releaseId + "': " + results.getMessages());
+					}
+					for (String nextKieBaseName : shadowContainer.getKieBaseNames()) {
+						shadowContainer.getKieBase(nextKieBaseName);
+					}
+
+					if (warmer != null) {
+						KieSession shadowSession = shadowContainer.newKieSession();
+						try {
+							warmer.warmUp(shadowSession);
+						} finally {
+							shadowSession.dispose();
+						}
+					}
+				} finally {
+					shadowContainer.dispose();
+				}
+
+				long preparationTime = System.nanoTime() - start;
+				LOGGER.debug("Prepared update to '{}' in {} ms.", releaseId, TimeUnit.NANOSECONDS.toMillis(preparationTime));
+				return new PreparedUpdate(kieModule, preparationTime);
+			}
+		});
+	}
+
+	/**
+	 * An update which has been built, verified and warmed up, and is ready to be applied to the live container.
+	 */
+	public class PreparedUpdate {
+
+		private final InternalKieModule kieModule;
+
+		private final ReleaseId releaseId;
+
+		private final long preparationTimeNanos;
+
+		private long cutOverTimeNanos = -1;
+
+		private PreparedUpdate(InternalKieModule kieModule, long preparationTimeNanos) {
+			this.kieModule = kieModule;
+			this.releaseId = kieModule.getReleaseId();
+			this.preparationTimeNanos = preparationTimeNanos;
+		}
+
+		/**
+		 * Deploys the prepared version to the repository and applies it to the live container, and all sessions created from it. Must be
+		 * called from the thread that owns those sessions.
+		 */
+		public synchronized Results cutOver() {
+			if (cutOverTimeNanos >= 0) {
+				throw new IllegalStateException("Update to '" + releaseId + "' has already been applied.");
+			}
+			long start = System.nanoTime();
+			kieServices.getRepository().addKieModule(kieModule);
+			Results results = kieContainer.updateToVersion(releaseId);
+			cutOverTimeNanos = System.nanoTime() - start;
+			LOGGER.debug("Cut over to '{}' in {} ms.", releaseId, TimeUnit.NANOSECONDS.toMillis(cutOverTimeNanos));
+			return results;
+		}
+
+		public ReleaseId getReleaseId() {
+			return releaseId;
+		}
+
+		public long getPreparationTimeNanos() {
+			return preparationTimeNanos;
+		}
+
+		/**
+		 * @return the time the cut-over took, or <code>-1</code> if the update has not been applied yet.
+		 */
+		public synchronized long getCutOverTimeNanos() {
+			return cutOverTimeNanos;
+		}
+	}
+
+}
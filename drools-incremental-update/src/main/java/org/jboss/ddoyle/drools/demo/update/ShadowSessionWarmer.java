@@ -0,0 +1,18 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Exercises a throw-away session of a shadow KieBase, so class loading and JIT compilation of the engine code paths used by the new rules
+ * happens before the live session is updated.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public interface ShadowSessionWarmer {
+
+	/**
+	 * Warms up the given session. The session is disposed by the caller.
+	 */
+	public abstract void warmUp(KieSession shadowSession);
+
+}
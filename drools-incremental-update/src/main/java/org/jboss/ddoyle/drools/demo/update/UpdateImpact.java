@@ -0,0 +1,120 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The predicted impact of updating a session to a candidate version of its KJAR, as computed by the {@link UpdateImpactAnalyzer}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class UpdateImpact {
+
+	/**
+	 * Update patterns that make existing facts refire rules that did not change functionally.
+	 */
+	public enum Flag {
+		/**
+		 * Rules are defined in a different resource than in the current version, e.g. because a DRL was renamed. Drools treats them as new
+		 * rules, so they refire for the facts in the session.
+		 */
+		RESOURCE_RENAMED,
+		/**
+		 * The content of rules changed, e.g. a constraint was added. Drools treats them as new rules, so they refire for the facts in the
+		 * session.
+		 */
+		RULES_CHANGED,
+		/**
+		 * Rules were renamed without changing their content. Drools treats them as new rules, so they refire for the facts in the session.
+		 */
+		RULES_RENAMED
+	}
+
+	private final RuleDiff ruleDiff;
+
+	private final Set<Flag> flags = EnumSet.noneOf(Flag.class);
+
+	private final Map<String, Integer> activationsCreated;
+
+	private final int activationsRefired;
+
+	private final int activationsCancelled;
+
+	private final long factsToPropagate;
+
+	UpdateImpact(RuleDiff ruleDiff, Map<String, Integer> activationsCreated, int activationsRefired, int activationsCancelled,
+			long factsToPropagate) {
+		this.ruleDiff = ruleDiff;
+		this.activationsCreated = activationsCreated;
+		this.activationsRefired = activationsRefired;
+		this.activationsCancelled = activationsCancelled;
+		this.factsToPropagate = factsToPropagate;
+		if (!ruleDiff.getMovedRules().isEmpty()) {
+			flags.add(Flag.RESOURCE_RENAMED);
+		}
+		if (!ruleDiff.getChangedRules().isEmpty()) {
+			flags.add(Flag.RULES_CHANGED);
+		}
+		if (!ruleDiff.getRenamedRules().isEmpty()) {
+			flags.add(Flag.RULES_RENAMED);
+		}
+	}
+
+	public RuleDiff getRuleDiff() {
+		return ruleDiff;
+	}
+
+	public Set<Flag> getFlags() {
+		return Collections.unmodifiableSet(flags);
+	}
+
+	/**
+	 * @return the number of activations the new, changed, moved and renamed rules will create for the facts in the session, keyed by rule
+	 *         id. Rules that create no activations are not included.
+	 */
+	public Map<String, Integer> getActivationsCreatedByRule() {
+		return Collections.unmodifiableMap(activationsCreated);
+	}
+
+	/**
+	 * @return the total number of activations the update will create for the facts in the session.
+	 */
+	public int getActivationsCreated() {
+		int total = 0;
+		for (Integer nextActivations : activationsCreated.values()) {
+			total += nextActivations;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of created activations that belong to changed, moved and renamed rules, i.e. the activations of rules that will
+	 *         fire again for facts they already fired for.
+	 */
+	public int getActivationsRefired() {
+		return activationsRefired;
+	}
+
+	/**
+	 * @return the number of pending activations of the session that are cancelled because their rule is removed or replaced.
+	 */
+	public int getActivationsCancelled() {
+		return activationsCancelled;
+	}
+
+	/**
+	 * @return the number of facts in the session that must be propagated through the nodes of the new, changed, moved and renamed rules.
+	 */
+	public long getFactsToPropagate() {
+		return factsToPropagate;
+	}
+
+	@Override
+	public String toString() {
+		return "UpdateImpact [flags=" + flags + ", activationsCreated=" + getActivationsCreated() + ", activationsRefired="
+				+ activationsRefired + ", activationsCancelled=" + activationsCancelled + ", factsToPropagate=" + factsToPropagate + "]";
+	}
+
+}
@@ -0,0 +1,335 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.RuleBaseConfiguration;
+import org.drools.core.RuleBaseConfiguration.AssertBehaviour;
+import org.drools.core.base.ClassObjectType;
+import org.drools.core.common.InternalAgenda;
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.core.rule.Pattern;
+import org.drools.core.rule.RuleConditionElement;
+import org.drools.core.spi.Activation;
+import org.kie.api.KieServices;
+import org.kie.api.KieBaseConfiguration;
+import org.kie.api.builder.model.KieBaseModel;
+import org.kie.api.conf.EqualityBehaviorOption;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.MatchCreatedEvent;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.runtime.rule.AgendaFilter;
+import org.kie.api.runtime.rule.Match;
+import org.kie.api.time.SessionPseudoClock;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+
+/**
+ * Predicts the impact of updating a live session to a candidate KJAR, without touching the session, its container or the
+ * {@link org.kie.api.builder.KieRepository}.
+ * <p/>
+ * The rules of both versions are compared with a {@link RuleDiff}. Only the DRLs of the KieBase of the session are compared, i.e. the DRLs
+ * in the packages of its <code>kmodule.xml</code> KieBase and of the KieBases it includes from the same KJAR. Drools treats added, changed
+ * and moved rules as new rules, which it evaluates against all facts in the session on the next {@link KieSession#fireAllRules()}. To
+ * predict the activations those rules create, the candidate DRLs are compiled into a scratch KieBase with the configuration of the live
+ * KieBase, from which all other rules are removed. The facts of the live session that match a pattern of the new rules are inserted in a
+ * scratch session with a pseudo clock at the time of the live session. The scratch session evaluates the rules, but doesn't fire them.
+ * Activations of temporal rules that depend on the order in which the facts were inserted (e.g. <code>not ... after</code>) are therefore
+ * an estimate.
+ * <p/>
+ * The facts themselves are shared with the live session, but the scratch session creates a fact handle for every inserted fact and
+ * fills the memories of the new rules' nodes, i.e. it costs about as much memory and time as the propagation of the update itself. For a
+ * session with tens of millions of events, the analysis should be run when there is room for that, or only for updates that add rules on
+ * a small subset of the fact types. When the update has no new rules, no scratch session is created.
+ * <p/>
+ * The analyzer reads the facts and the agenda of the live session, so it must be called from the thread that owns the session.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class UpdateImpactAnalyzer {
+
+	private static final String DRL_EXTENSION = ".drl";
+
+	private static final String RESOURCES_PATH = "src/main/resources/";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final AgendaFilter FIRE_NOTHING = new AgendaFilter() {
+		@Override
+		public boolean accept(Match match) {
+			return false;
+		}
+	};
+
+	private final KieServices kieServices;
+
+	private final DrlRuleFingerprinter fingerprinter = new DrlRuleFingerprinter();
+
+	public UpdateImpactAnalyzer(KieServices kieServices) {
+		this.kieServices = kieServices;
+	}
+
+	/**
+	 * Analyzes the update of a session of the given container to the candidate KJAR. The current version of the container is taken from
+	 * the {@link org.kie.api.builder.KieRepository}, so the candidate must not have been deployed under the same {@link org.kie.api.builder.ReleaseId}.
+	 */
+	public UpdateImpact analyze(KieContainer kieContainer, InternalKieModule candidate, KieSession kieSession) {
+		return analyze((InternalKieModule) kieServices.getRepository().getKieModule(kieContainer.getReleaseId()), candidate, kieSession);
+	}
+
+	/**
+	 * Analyzes the update of a session of the current KJAR to the candidate KJAR. The KieBase of the session is looked up in the
+	 * <code>kmodule.xml</code> of both KJARs by the id of the session's KieBase, which Drools sets to the name of the KieBase.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the DRLs of the candidate don't build.
+	 */
+	public UpdateImpact analyze(InternalKieModule current, InternalKieModule candidate, KieSession kieSession) {
+		return analyze(current, candidate, ((InternalKnowledgeBase) kieSession.getKieBase()).getId(), kieSession);
+	}
+
+	/**
+	 * Analyzes the update of a session of the given KieBase of the current KJAR to the candidate KJAR. When a KJAR doesn't define the
+	 * KieBase, all its DRLs are analyzed.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the DRLs of the candidate don't build.
+	 */
+	public UpdateImpact analyze(InternalKieModule current, InternalKieModule candidate, String kieBaseName, KieSession kieSession) {
+		Map<String, String> candidateDrls = getDrls(candidate, kieBaseName);
+		RuleDiff ruleDiff = RuleDiff.compute(fingerprint(getDrls(current, kieBaseName)), fingerprint(candidateDrls));
+
+		Set<String> refiredRules = new HashSet<>();
+		addRuleIds(refiredRules, ruleDiff.getChangedRules());
+		addRuleIds(refiredRules, ruleDiff.getMovedRules());
+		addRuleIds(refiredRules, ruleDiff.getRenamedRules().values());
+		Set<String> newRules = new HashSet<>(refiredRules);
+		addRuleIds(newRules, ruleDiff.getAddedRules());
+
+		Set<String> replacedRules = new HashSet<>();
+		addRuleIds(replacedRules, ruleDiff.getRemovedRules());
+		addRuleIds(replacedRules, ruleDiff.getChangedRules());
+		addRuleIds(replacedRules, ruleDiff.getMovedRules());
+
+		Collection<? extends Object> facts = kieSession.getObjects();
+		Set<Class<?>> factTypes = new HashSet<>();
+		Map<String, Integer> activationsCreated = new HashMap<>();
+		if (!newRules.isEmpty()) {
+			InternalKnowledgeBase scratchKieBase = buildScratchKieBase(candidateDrls, newRules, kieSession);
+			factTypes = getFactTypes(scratchKieBase, newRules);
+			activationsCreated = countActivations(scratchKieBase, newRules, factTypes, facts, kieSession);
+		}
+		int activationsRefired = 0;
+		for (Map.Entry<String, Integer> nextActivations : activationsCreated.entrySet()) {
+			if (refiredRules.contains(nextActivations.getKey())) {
+				activationsRefired += nextActivations.getValue();
+			}
+		}
+
+		int activationsCancelled = 0;
+		for (Activation<?> nextActivation : ((InternalAgenda) kieSession.getAgenda()).getActivations()) {
+			RuleImpl rule = nextActivation.getRule();
+			if (replacedRules.contains(rule.getPackageName() + "-" + rule.getName())) {
+				activationsCancelled++;
+			}
+		}
+
+		long factsToPropagate = 0;
+		for (Object nextFact : facts) {
+			if (isInstance(factTypes, nextFact)) {
+				factsToPropagate++;
+			}
+		}
+		return new UpdateImpact(ruleDiff, activationsCreated, activationsRefired, activationsCancelled, factsToPropagate);
+	}
+
+	/**
+	 * @return the DRLs of the given KieBase, or all DRLs of the KJAR if it doesn't define the KieBase.
+	 */
+	private Map<String, String> getDrls(InternalKieModule kieModule, String kieBaseName) {
+		Set<String> packages = null;
+		Map<String, KieBaseModel> kieBaseModels = kieModule.getKieModuleModel().getKieBaseModels();
+		if (kieBaseName != null && kieBaseModels.containsKey(kieBaseName)) {
+			packages = new HashSet<>();
+			addPackages(packages, kieBaseModels, kieBaseName, new HashSet<String>());
+		}
+		Map<String, String> drls = new HashMap<>();
+		for (String nextFileName : kieModule.getFileNames()) {
+			if (nextFileName.endsWith(DRL_EXTENSION) && (packages == null || isInPackages(packages, nextFileName))) {
+				drls.put(nextFileName, new String(kieModule.getBytes(nextFileName), UTF_8));
+			}
+		}
+		return drls;
+	}
+
+	/**
+	 * Adds the packages of the given KieBase and of the KieBases it includes from the same KJAR. A KieBase without packages contains all
+	 * packages, which is represented by <code>*</code>.
+	 */
+	private static void addPackages(Set<String> packages, Map<String, KieBaseModel> kieBaseModels, String kieBaseName, Set<String> visited) {
+		KieBaseModel kieBaseModel = kieBaseModels.get(kieBaseName);
+		if (kieBaseModel == null || !visited.add(kieBaseName)) {
+			return;
+		}
+		if (kieBaseModel.getPackages().isEmpty()) {
+			packages.add("*");
+		}
+		packages.addAll(kieBaseModel.getPackages());
+		for (String nextInclude : kieBaseModel.getIncludes()) {
+			addPackages(packages, kieBaseModels, nextInclude, visited);
+		}
+	}
+
+	/**
+	 * Whether the file is in one of the packages, where the package of a file is its folder, like Drools assigns resources to a KieBase. A
+	 * package can end with the <code>.*</code> wildcard.
+	 */
+	private static boolean isInPackages(Set<String> packages, String fileName) {
+		String path = fileName.startsWith(RESOURCES_PATH) ? fileName.substring(RESOURCES_PATH.length()) : fileName;
+		int lastSeparator = path.lastIndexOf('/');
+		String filePackage = (lastSeparator < 0) ? "" : path.substring(0, lastSeparator).replace('/', '.');
+		for (String nextPackage : packages) {
+			if (nextPackage.equals("*") || nextPackage.equals(filePackage)) {
+				return true;
+			}
+			if (nextPackage.endsWith(".*")) {
+				String parentPackage = nextPackage.substring(0, nextPackage.length() - 2);
+				if (filePackage.equals(parentPackage) || filePackage.startsWith(parentPackage + ".")) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private Map<String, List<RuleFingerprint>> fingerprint(Map<String, String> drls) {
+		Map<String, List<RuleFingerprint>> fingerprints = new HashMap<>();
+		for (Map.Entry<String, String> nextDrl : drls.entrySet()) {
+			fingerprints.put(nextDrl.getKey(), fingerprinter.fingerprint(nextDrl.getValue()));
+		}
+		return fingerprints;
+	}
+
+	private static void addRuleIds(Set<String> ruleIds, Collection<RuleFingerprint> fingerprints) {
+		for (RuleFingerprint nextFingerprint : fingerprints) {
+			ruleIds.add(nextFingerprint.getRuleId());
+		}
+	}
+
+	/**
+	 * Builds a KieBase of the given DRLs, with the configuration of the KieBase of the session, that only contains the given rules.
+	 */
+	private InternalKnowledgeBase buildScratchKieBase(Map<String, String> drls, Set<String> ruleIds, KieSession kieSession) {
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		for (Map.Entry<String, String> nextDrl : drls.entrySet()) {
+			knowledgeBuilder.add(ResourceFactory.newByteArrayResource(nextDrl.getValue().getBytes(UTF_8)).setSourcePath(nextDrl.getKey()),
+					ResourceType.DRL);
+		}
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalArgumentException("Candidate KJAR doesn't build: " + knowledgeBuilder.getErrors());
+		}
+
+		RuleBaseConfiguration liveConfiguration = ((InternalKnowledgeBase) kieSession.getKieBase()).getConfiguration();
+		KieBaseConfiguration configuration = kieServices.newKieBaseConfiguration();
+		configuration.setOption(liveConfiguration.getEventProcessingMode());
+		configuration.setOption(liveConfiguration.getAssertBehaviour() == AssertBehaviour.EQUALITY ? EqualityBehaviorOption.EQUALITY
+				: EqualityBehaviorOption.IDENTITY);
+		InternalKnowledgeBase scratchKieBase = (InternalKnowledgeBase) KnowledgeBaseFactory.newKnowledgeBase(configuration);
+		scratchKieBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		List<Rule> otherRules = new ArrayList<>();
+		for (KiePackage nextKiePackage : scratchKieBase.getKiePackages()) {
+			for (Rule nextRule : nextKiePackage.getRules()) {
+				if (!ruleIds.contains(nextRule.getPackageName() + "-" + nextRule.getName())) {
+					otherRules.add(nextRule);
+				}
+			}
+		}
+		for (Rule nextRule : otherRules) {
+			scratchKieBase.removeRule(nextRule.getPackageName(), nextRule.getName());
+		}
+		return scratchKieBase;
+	}
+
+	private Map<String, Integer> countActivations(InternalKnowledgeBase scratchKieBase, final Set<String> ruleIds, Set<Class<?>> factTypes,
+			Collection<? extends Object> facts, KieSession kieSession) {
+		final Map<String, Integer> activations = new HashMap<>();
+		KieSessionConfiguration sessionConfiguration = kieServices.newKieSessionConfiguration();
+		sessionConfiguration.setOption(ClockTypeOption.get("pseudo"));
+		StatefulKnowledgeSession scratchSession = scratchKieBase.newStatefulKnowledgeSession(sessionConfiguration, null);
+		try {
+			SessionPseudoClock clock = scratchSession.getSessionClock();
+			clock.advanceTime(kieSession.getSessionClock().getCurrentTime() - clock.getCurrentTime(), TimeUnit.MILLISECONDS);
+			scratchSession.addEventListener(new DefaultAgendaEventListener() {
+				@Override
+				public void matchCreated(MatchCreatedEvent event) {
+					String ruleId = event.getMatch().getRule().getPackageName() + "-" + event.getMatch().getRule().getName();
+					if (ruleIds.contains(ruleId)) {
+						Integer count = activations.get(ruleId);
+						activations.put(ruleId, (count == null) ? 1 : count + 1);
+					}
+				}
+			});
+			for (Object nextFact : facts) {
+				if (isInstance(factTypes, nextFact)) {
+					scratchSession.insert(nextFact);
+				}
+			}
+			scratchSession.fireAllRules(FIRE_NOTHING);
+		} finally {
+			scratchSession.dispose();
+		}
+		return activations;
+	}
+
+	/**
+	 * @return the types of the patterns of the given rules.
+	 */
+	private static Set<Class<?>> getFactTypes(InternalKnowledgeBase scratchKieBase, Set<String> ruleIds) {
+		Set<Class<?>> factTypes = new HashSet<>();
+		for (String nextRuleId : ruleIds) {
+			int separator = nextRuleId.indexOf('-');
+			RuleImpl rule = (RuleImpl) scratchKieBase.getRule(nextRuleId.substring(0, separator), nextRuleId.substring(separator + 1));
+			if (rule != null) {
+				addFactTypes(factTypes, rule.getLhs());
+			}
+		}
+		return factTypes;
+	}
+
+	private static boolean isInstance(Set<Class<?>> factTypes, Object fact) {
+		for (Class<?> nextFactType : factTypes) {
+			if (nextFactType.isInstance(fact)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void addFactTypes(Set<Class<?>> factTypes, RuleConditionElement element) {
+		if (element instanceof Pattern && ((Pattern) element).getObjectType() instanceof ClassObjectType) {
+			factTypes.add(((ClassObjectType) ((Pattern) element).getObjectType()).getClassType());
+		}
+		for (RuleConditionElement nextElement : element.getNestedElements()) {
+			addFactTypes(factTypes, nextElement);
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package org.jboss.ddoyle.drools.demo;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.drools.compiler.kie.builder.impl.InternalKieModule;
@@ -11,12 +12,16 @@ import org.drools.core.spi.Activation;
 import org.drools.core.time.impl.PseudoClockScheduler;
 import org.drools.core.util.FileManager;
 import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.jboss.ddoyle.drools.demo.session.EventBatchInserter;
+import org.jboss.ddoyle.drools.demo.session.TimeBucketedEventStore;
 import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
 import org.kie.api.builder.KieModule;
 import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
 import org.kie.api.builder.model.KieBaseModel;
 import org.kie.api.builder.model.KieModuleModel;
 import org.kie.api.builder.model.KieSessionModel;
@@ -25,6 +30,7 @@ import org.kie.api.conf.EventProcessingOption;
 import org.kie.api.definition.KiePackage;
 import org.kie.api.definition.rule.Rule;
 import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.conf.ClockTypeOption;
 
@@ -40,12 +46,32 @@ public class KieTestUtils {
 		kieSession.insert(event);
 		// Advance the clock if required.
 		PseudoClockScheduler clock = kieSession.getSessionClock();
-		long advanceTime = event.getTimestamp().getTime() - clock.getCurrentTime();
+		long advanceTime = Events.getTimestampMillis(event) - clock.getCurrentTime();
 		if (advanceTime > 0) {
 			clock.advanceTime(advanceTime, TimeUnit.MILLISECONDS);
 		}
 	}
 	
+	/**
+	 * Inserts the event through the {@link TimeBucketedEventStore}, advances the clock to the event and retracts the expired buckets.
+	 * 
+	 * @return the number of events retracted.
+	 */
+	public static int insertAndAdvance(TimeBucketedEventStore eventStore, Event event) {
+		eventStore.insert(event);
+		return eventStore.advanceTo(Events.getTimestampMillis(event));
+	}
+	
+	/**
+	 * Inserts a time-sorted batch of events with an {@link EventBatchInserter} and fires the rules.
+	 * 
+	 * @return the number of rules fired.
+	 */
+	public static int insertAndFire(KieSession kieSession, List<? extends Event> events, long clockAdvanceIntervalMillis,
+			long maxFireIntervalMillis) {
+		return new EventBatchInserter(kieSession, clockAdvanceIntervalMillis, maxFireIntervalMillis).insertAndFire(events);
+	}
+	
 	public static void logRulesInKieBase(KieBase kieBase) {
 		Collection<KiePackage> kiePackages = kieBase.getKiePackages();
 		for (KiePackage nextKiePackage:kiePackages) {
@@ -57,18 +83,31 @@ public class KieTestUtils {
 	}
 	
 	public static  KieFileSystem createKieFileSystemWithKProject(KieServices ks, boolean isdefault) {
+		return createKieFileSystemWithKProject(ks, isdefault, EqualityBehaviorOption.EQUALITY);
+	}
+	
+	public static  KieFileSystem createKieFileSystemWithKProject(KieServices ks, boolean isdefault, EqualityBehaviorOption equalityBehavior) {
+		KieModuleModel kproj = createKieModuleModel(ks, isdefault, equalityBehavior);
+
+		KieFileSystem kfs = ks.newKieFileSystem();
+		kfs.writeKModuleXML(kproj.toXML());
+		return kfs;
+	}
+	
+	public static KieModuleModel createKieModuleModel(KieServices ks, boolean isdefault) {
+		return createKieModuleModel(ks, isdefault, EqualityBehaviorOption.EQUALITY);
+	}
+	
+	public static KieModuleModel createKieModuleModel(KieServices ks, boolean isdefault, EqualityBehaviorOption equalityBehavior) {
 		KieModuleModel kproj = ks.newKieModuleModel();
 
 		KieBaseModel kieBaseModel1 = kproj.newKieBaseModel("KBase1").setDefault(isdefault)
-				.setEqualsBehavior(EqualityBehaviorOption.EQUALITY).setEventProcessingMode(EventProcessingOption.STREAM);
+				.setEqualsBehavior(equalityBehavior).setEventProcessingMode(EventProcessingOption.STREAM);
 
 		// Configure the KieSession.
 		kieBaseModel1.newKieSessionModel("KSession1").setDefault(isdefault).setType(KieSessionModel.KieSessionType.STATEFUL)
 				.setClockType(ClockTypeOption.get("pseudo"));
-
-		KieFileSystem kfs = ks.newKieFileSystem();
-		kfs.writeKModuleXML(kproj.toXML());
-		return kfs;
+		return kproj;
 	}
 	
 	
@@ -114,7 +153,12 @@ public class KieTestUtils {
 	}
 	
 	public static InternalKieModule createKieJar(KieServices ks, ReleaseId releaseId, ResourceWrapper resourceWrapper) {
-		KieFileSystem kfs = createKieFileSystemWithKProject(ks, true);
+		return createKieJar(ks, releaseId, resourceWrapper, EqualityBehaviorOption.EQUALITY);
+	}
+	
+	public static InternalKieModule createKieJar(KieServices ks, ReleaseId releaseId, ResourceWrapper resourceWrapper,
+			EqualityBehaviorOption equalityBehavior) {
+		KieFileSystem kfs = createKieFileSystemWithKProject(ks, true, equalityBehavior);
 		kfs.writePomXML(getPom(releaseId));
 
 		kfs.write("src/main/resources/" + resourceWrapper.targetResourceName, resourceWrapper.getResource());
@@ -129,6 +173,14 @@ public class KieTestUtils {
 	}
 	
 	
+	/**
+	 * Deploys the given KJAR to the repository and updates the {@link KieContainer} to it.
+	 */
+	public static Results deployAndUpdate(KieServices ks, KieContainer kieContainer, InternalKieModule kieModule) {
+		ks.getRepository().addKieModule(kieModule);
+		return kieContainer.updateToVersion(kieModule.getReleaseId());
+	}
+	
 	public static class ResourceWrapper {
 		
 		private final Resource resource;
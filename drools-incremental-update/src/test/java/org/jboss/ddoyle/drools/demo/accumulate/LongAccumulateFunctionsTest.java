@@ -0,0 +1,212 @@
+package org.jboss.ddoyle.drools.demo.accumulate;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.deployAndUpdate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the <code>long</code> accumulate functions over a sliding window, in which expired events are reversed from the accumulated
+ * state.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class LongAccumulateFunctionsTest {
+
+	private static final long TIMESTAMP = 1424678400000L;
+
+	@Test
+	public void testSlidingWindowAggregates() {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-long-accumulate-functions", "1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("accumulateRules/window-accumulate-rules.drl")));
+
+		KieSession kieSession = kieServices.newKieContainer(releaseId).newKieSession();
+		WindowAggregates aggregates = new WindowAggregates();
+		kieSession.setGlobal("aggregates", aggregates);
+		try {
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("5", "MY_CODE", TIMESTAMP));
+			kieSession.fireAllRules();
+			aggregates.assertValues(1, 5, 5, 5, 5.0, 5);
+
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("1", "MY_CODE", TIMESTAMP + 2000));
+			kieSession.fireAllRules();
+			aggregates.assertValues(2, 6, 1, 5, 3.0, 1);
+
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("9", "MY_CODE", TIMESTAMP + 4000));
+			kieSession.fireAllRules();
+			aggregates.assertValues(3, 15, 1, 9, 5.0, 5);
+
+			// The first event leaves the 10 second window.
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(7, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+			aggregates.assertValues(2, 10, 1, 9, 5.0, 1);
+
+			// The second event leaves the 10 second window.
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(2, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+			aggregates.assertValues(1, 9, 9, 9, 9.0, 9);
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * An update that adds a rule to the DRL keeps the accumulate memory of the unchanged window rule. The rule doesn't refire on the update,
+	 * and the events that were accumulated before the update are reversed from the kept state when they leave the window.
+	 */
+	@Test
+	public void testWindowAggregatesAreKeptOnUpdateToVersion() {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-long-accumulate-functions-update", "1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("accumulateRules/window-accumulate-rules.drl")));
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		WindowAggregates aggregates = new WindowAggregates();
+		kieSession.setGlobal("aggregates", aggregates);
+		try {
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("5", "MY_CODE", TIMESTAMP));
+			kieSession.fireAllRules();
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("1", "MY_CODE", TIMESTAMP + 2000));
+			kieSession.fireAllRules();
+			aggregates.assertValues(2, 6, 1, 5, 3.0, 1);
+			assertEquals(2, aggregates.getNrOfUpdates());
+
+			ReleaseId updatedReleaseId = kieServices.newReleaseId("org.kie", "test-long-accumulate-functions-update", "1.0.1");
+			deployAndUpdate(kieServices, kieContainer, createKieJar(kieServices, updatedReleaseId,
+					kieServices.getResources().newClassPathResource("accumulateRules/window-accumulate-rules-2.drl")));
+			kieSession.fireAllRules();
+			// The window rule is unchanged, so it doesn't refire for the accumulated events.
+			assertEquals(2, aggregates.getNrOfUpdates());
+
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("9", "MY_CODE", TIMESTAMP + 4000));
+			kieSession.fireAllRules();
+			aggregates.assertValues(3, 15, 1, 9, 5.0, 5);
+
+			// The first event, accumulated before the update, leaves the 10 second window.
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(7, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+			aggregates.assertValues(2, 10, 1, 9, 5.0, 1);
+
+			// The second event, accumulated before the update, leaves the 10 second window.
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(2, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+			aggregates.assertValues(1, 9, 9, 9, 9.0, 9);
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * The accumulated state survives serialization, and values can still be reversed from the deserialized state.
+	 */
+	@Test
+	public void testContextIsSerializable() throws Exception {
+		LongMedianFunction medianFunction = new LongMedianFunction();
+		Serializable context = medianFunction.createContext();
+		medianFunction.init(context);
+		for (long nextValue : Arrays.asList(3L, 1L, 3L, 7L)) {
+			medianFunction.accumulate(context, nextValue);
+		}
+		assertEquals(3L, medianFunction.getResult(context));
+
+		Serializable copy = copyOf(context);
+		medianFunction.reverse(copy, 3L);
+		medianFunction.reverse(copy, 3L);
+		assertEquals(1L, medianFunction.getResult(copy));
+		medianFunction.reverse(copy, 1L);
+		medianFunction.reverse(copy, 7L);
+		assertNull(medianFunction.getResult(copy));
+
+		// The original context is not affected.
+		assertEquals(3L, medianFunction.getResult(context));
+	}
+
+	/**
+	 * The percentiles are looked up by rank in the multiset, also after values have been reversed in an order other than the one they were
+	 * accumulated in.
+	 */
+	@Test
+	public void testPercentilesOfManyDistinctValues() {
+		LongPercentile95Function percentileFunction = new LongPercentile95Function();
+		Serializable context = percentileFunction.createContext();
+		percentileFunction.init(context);
+		List<Long> values = new ArrayList<>();
+		for (long value = 1; value <= 1000; value++) {
+			values.add(value);
+		}
+		Collections.shuffle(values, new Random(42));
+		for (Long nextValue : values) {
+			percentileFunction.accumulate(context, nextValue);
+		}
+		assertEquals(950L, percentileFunction.getResult(context));
+
+		// Reverse all odd values, which leaves the 500 even values from 2 to 1000.
+		for (Long nextValue : values) {
+			if (nextValue % 2 == 1) {
+				percentileFunction.reverse(context, nextValue);
+			}
+		}
+		assertEquals(950L, percentileFunction.getResult(context));
+		assertEquals(2L, new LongMinFunction().getResult(context));
+		assertEquals(1000L, new LongMaxFunction().getResult(context));
+	}
+
+	private static Serializable copyOf(Serializable context) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(context);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (Serializable) in.readObject();
+		}
+	}
+
+	/**
+	 * Keeps the last results of the <code>SimpleTestRule-WindowAggregates</code> rule.
+	 */
+	public static class WindowAggregates {
+
+		private List<Number> values;
+
+		private int nrOfUpdates;
+
+		public void update(Number count, Number sum, Number min, Number max, Number average, Number median) {
+			values = Arrays.asList(count, sum, min, max, average, median);
+			nrOfUpdates++;
+		}
+
+		private int getNrOfUpdates() {
+			return nrOfUpdates;
+		}
+
+		private void assertValues(long count, long sum, long min, long max, double average, long median) {
+			assertEquals(Arrays.<Number> asList(count, sum, min, max, average, median), values);
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+package org.jboss.ddoyle.drools.demo.codec;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.marshalling.Marshaller;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+
+/**
+ * Tests the {@link SimpleEventCodec}, the replay log and the {@link SimpleEventMarshallingStrategy}.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class SimpleEventCodecTest {
+
+	/**
+	 * Tests that every id form (numeric, UUID, other strings and <code>null</code>) and every code form survive a round trip.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<SimpleEvent> events = new ArrayList<>();
+		events.add(new SimpleEvent("1", "MY_CODE", 1424678400000L));
+		events.add(new SimpleEvent("0", "MY_CODE", 0L));
+		events.add(new SimpleEvent("007", "OTHER_CODE", -5L));
+		events.add(new SimpleEvent("6f1c2a3e-8b4d-4c5e-9f60-718293a4b5c6", null, 1424678400000L));
+		events.add(new SimpleEvent("6F1C2A3E-8B4D-4C5E-9F60-718293A4B5C6", "MY_CODE", 1424678400000L));
+		events.add(new SimpleEvent("not-a-number", "", Long.MAX_VALUE));
+		events.add(new SimpleEvent(null, "MY_CODE", Long.MIN_VALUE));
+
+		// Codes written as strings.
+		assertRoundTrip(events, new SimpleEventCodec(), new SimpleEventCodec());
+
+		// Codes defined inline, the decoder builds up its own dictionary.
+		assertRoundTrip(events, new SimpleEventCodec(new CodeDictionary(), true), new SimpleEventCodec(new CodeDictionary(), true));
+
+		// Codes only referenced, the decoder needs a copy of the encoder's dictionary.
+		SimpleEventCodec encoder = new SimpleEventCodec(new CodeDictionary(), false);
+		byte[] bytes = encode(events, encoder);
+		assertDecodes(events, bytes, new SimpleEventCodec(copyOf(encoder.getDictionary()), false));
+	}
+
+	/**
+	 * Tests that a replay log is considerably smaller than the same events written with Java serialization.
+	 */
+	@Test
+	public void testEventLog() throws Exception {
+		List<SimpleEvent> events = new ArrayList<>();
+		for (int counter = 0; counter < 1000; counter++) {
+			events.add(new SimpleEvent("MY_CODE", new Date(1424678400000L + counter * 1000L)));
+		}
+
+		ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+		try (EventLogWriter writer = new EventLogWriter(logBytes)) {
+			for (SimpleEvent nextEvent : events) {
+				writer.write(nextEvent);
+			}
+		}
+
+		ByteArrayOutputStream serializedBytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(serializedBytes)) {
+			for (SimpleEvent nextEvent : events) {
+				oos.writeObject(nextEvent);
+			}
+		}
+		assertTrue(logBytes.size() * 2 < serializedBytes.size());
+
+		try (EventLogReader reader = new EventLogReader(new ByteArrayInputStream(logBytes.toByteArray()))) {
+			for (SimpleEvent nextEvent : events) {
+				SimpleEvent readEvent = reader.read();
+				assertEventEquals(nextEvent, readEvent);
+				assertSame("MY_CODE", readEvent.getCode());
+			}
+			assertNull(reader.read());
+		}
+	}
+
+	/**
+	 * Tests marshalling and unmarshalling a session with the {@link SimpleEventMarshallingStrategy}.
+	 */
+	@Test
+	public void testMarshallSession() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-marshall-session", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		KieSession unmarshalledKieSession = null;
+		try {
+			List<SimpleEvent> events = TestEventsFactory.getFirstSimpleEvents();
+			for (SimpleEvent nextEvent : events) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			Marshaller marshaller = kieServices.getMarshallers().newMarshaller(
+					kieContainer.getKieBase(),
+					new ObjectMarshallingStrategy[] { new SimpleEventMarshallingStrategy(),
+							kieServices.getMarshallers().newSerializeMarshallingStrategy() });
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			marshaller.marshall(bytes, kieSession);
+
+			KieSessionConfiguration kieSessionConfiguration = kieServices.newKieSessionConfiguration();
+			kieSessionConfiguration.setOption(ClockTypeOption.get("pseudo"));
+			unmarshalledKieSession = marshaller.unmarshall(new ByteArrayInputStream(bytes.toByteArray()), kieSessionConfiguration,
+					kieServices.newEnvironment());
+
+			Collection<? extends Object> objects = unmarshalledKieSession.getObjects();
+			assertEquals(events.size(), objects.size());
+			Set<String> ids = new HashSet<>();
+			for (Object nextObject : objects) {
+				ids.add(((SimpleEvent) nextObject).getId());
+			}
+			assertEquals(new HashSet<>(Arrays.asList("1", "2")), ids);
+		} finally {
+			kieSession.dispose();
+			if (unmarshalledKieSession != null) {
+				unmarshalledKieSession.dispose();
+			}
+		}
+	}
+
+	private static void assertRoundTrip(List<SimpleEvent> events, SimpleEventCodec encoder, SimpleEventCodec decoder) throws Exception {
+		assertDecodes(events, encode(events, encoder), decoder);
+	}
+
+	private static byte[] encode(List<SimpleEvent> events, SimpleEventCodec encoder) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (SimpleEvent nextEvent : events) {
+			encoder.write(out, nextEvent);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void assertDecodes(List<SimpleEvent> events, byte[] bytes, SimpleEventCodec decoder) throws Exception {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		for (SimpleEvent nextEvent : events) {
+			assertEventEquals(nextEvent, decoder.read(in));
+		}
+		assertEquals(-1, in.read());
+	}
+
+	private static CodeDictionary copyOf(CodeDictionary original) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		original.writeTo(out);
+		out.flush();
+		CodeDictionary dictionary = new CodeDictionary();
+		dictionary.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		return dictionary;
+	}
+
+	private static void assertEventEquals(SimpleEvent expected, SimpleEvent actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getCode(), actual.getCode());
+		assertEquals(expected.getTimestampMillis(), actual.getTimestampMillis());
+	}
+
+}
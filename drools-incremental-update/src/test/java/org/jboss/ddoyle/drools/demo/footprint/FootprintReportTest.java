@@ -0,0 +1,63 @@
+package org.jboss.ddoyle.drools.demo.footprint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.ddoyle.drools.demo.footprint.FootprintReport.FootprintDelta;
+import org.jboss.ddoyle.drools.demo.update.RuleDiff;
+import org.jboss.ddoyle.drools.demo.update.RuleFingerprint;
+import org.junit.Test;
+
+/**
+ * Tests the {@link FootprintReport#predictDelta(RuleDiff)} of a changed rule that shares a node with an unchanged rule.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class FootprintReportTest {
+
+	private static final String PACKAGE_NAME = "org.jboss.ddoyle.drools.cep.sample";
+
+	@Test
+	public void testSharedNodeIsNotRebuilt() {
+		RuleFootprint ruleOne = new RuleFootprint(PACKAGE_NAME + "-" + "Rule-One");
+		RuleFootprint ruleTwo = new RuleFootprint(PACKAGE_NAME + "-" + "Rule-Two");
+
+		NodeFootprint sharedNode = new NodeFootprint(1, "JoinNode", 10, 10, 1000);
+		sharedNode.addRuleId(ruleOne.getRuleId());
+		sharedNode.addRuleId(ruleTwo.getRuleId());
+		ruleOne.addNode(sharedNode);
+		ruleTwo.addNode(sharedNode);
+
+		NodeFootprint unsharedNode = new NodeFootprint(2, "NotNode", 0, 5, 200);
+		unsharedNode.addRuleId(ruleTwo.getRuleId());
+		ruleTwo.addNode(unsharedNode);
+
+		Map<String, RuleFootprint> rules = new HashMap<>();
+		rules.put(ruleOne.getRuleId(), ruleOne);
+		rules.put(ruleTwo.getRuleId(), ruleTwo);
+		Map<Integer, NodeFootprint> nodes = new HashMap<>();
+		nodes.put(sharedNode.getNodeId(), sharedNode);
+		nodes.put(unsharedNode.getNodeId(), unsharedNode);
+		FootprintReport report = new FootprintReport(rules, nodes, 10, 0);
+
+		Map<String, List<RuleFingerprint>> previousRules = Collections.singletonMap("rules.drl", ruleFingerprints("one", "two"));
+		Map<String, List<RuleFingerprint>> currentRules = Collections.singletonMap("rules.drl", ruleFingerprints("one", "changed-two"));
+		FootprintDelta delta = report.predictDelta(RuleDiff.compute(previousRules, currentRules));
+
+		// Only the node of the changed rule that is not shared with the first rule is removed and rebuilt.
+		assertEquals(200, delta.getFreedBytes());
+		assertEquals(200, delta.getAddedBytes());
+		assertEquals(0, delta.getNetBytes());
+	}
+
+	private static List<RuleFingerprint> ruleFingerprints(String ruleOneHash, String ruleTwoHash) {
+		return Arrays.asList(new RuleFingerprint(PACKAGE_NAME, "Rule-One", ruleOneHash), new RuleFingerprint(PACKAGE_NAME, "Rule-Two",
+				ruleTwoHash));
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.jboss.ddoyle.drools.demo.footprint;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieModuleModel;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.footprint.FootprintReport.FootprintDelta;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.update.IncrementalKieJarBuilder;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link MemoryFootprintEstimator} with the original rules, where the <code>not</code> of the second rule keeps all events in its
+ * right memory, and predicts the memory freed by deleting the second rule (see
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateDeletedRulesTest}).
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class MemoryFootprintEstimatorTest {
+
+	@Test
+	public void testFootprintOfNotNode() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-memory-footprint", "1.0.0");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			List<? extends Event> events = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : events) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			for (Event nextEvent : TestEventsFactory.getSecondSimpleEvents()) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			FootprintReport report = new MemoryFootprintEstimator().estimate(kieSession);
+			assertEquals(3, report.getFactCount());
+
+			// The first rule only has alpha constraints, which have no memory.
+			RuleFootprint ruleOne = report.getRules().get("org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-One");
+			assertEquals(0, ruleOne.getNodes().size());
+			assertEquals(0, ruleOne.getEstimatedBytes());
+
+			// The not node of the second rule keeps all 3 events in its right memory.
+			RuleFootprint ruleTwo = report.getRules().get("org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-Two");
+			assertEquals(1, ruleTwo.getNodes().size());
+			assertEquals("NotNode", ruleTwo.getNodes().get(0).getNodeType());
+			assertEquals(3, ruleTwo.getRightTuples());
+			assertTrue(ruleTwo.getEstimatedBytes() > 0);
+			assertEquals(ruleTwo.getEstimatedBytes(), report.getEstimatedNodeBytes());
+
+			resources.put("rules.drl", kieServices.getResources().newClassPathResource("deletedRules/rules-1.drl"));
+			builder.build(releaseId, resources);
+
+			FootprintDelta delta = report.predictDelta(builder.getLastRuleDiff());
+			assertEquals(ruleTwo.getEstimatedBytes(), delta.getFreedBytes());
+			assertEquals(0, delta.getAddedBytes());
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.jboss.ddoyle.drools.demo.listener;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link RuleFireCountingAgendaEventListener}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class RuleFireCountingAgendaEventListenerTest {
+
+	private static final String RULE_ONE = "org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One";
+
+	private static final int NR_OF_SESSIONS = 4;
+
+	private static final int NR_OF_EVENTS = 1000;
+
+	private static final long TIMESTAMP = 1424678400000L;
+
+	@Test
+	public void testSnapshotAndReset() {
+		KieContainer kieContainer = newKieContainer("test-rule-fire-counting-snapshot");
+		RuleFireCountingAgendaEventListener listener = new RuleFireCountingAgendaEventListener();
+
+		fire(kieContainer, listener, "1");
+		Map<String, Long> snapshot = listener.snapshot();
+		assertEquals(Collections.singletonMap(RULE_ONE, Long.valueOf(NR_OF_EVENTS)), snapshot);
+
+		fire(kieContainer, listener, "2");
+		// A snapshot doesn't change when the rules fire after it has been taken.
+		assertEquals(Long.valueOf(NR_OF_EVENTS), snapshot.get(RULE_ONE));
+		assertEquals(2 * NR_OF_EVENTS, listener.getFireCount(RULE_ONE));
+
+		listener.reset();
+		assertEquals(0, listener.getFireCount(RULE_ONE));
+		assertTrue(listener.snapshot().isEmpty());
+
+		fire(kieContainer, listener, "3");
+		assertEquals(NR_OF_EVENTS, listener.getFireCount(RULE_ONE));
+	}
+
+	/**
+	 * Sessions on different threads share a striped listener, no fire is lost.
+	 */
+	@Test
+	public void testConcurrentCounting() throws Exception {
+		final KieContainer kieContainer = newKieContainer("test-rule-fire-counting-concurrent");
+		final RuleFireCountingAgendaEventListener listener = new RuleFireCountingAgendaEventListener(NR_OF_SESSIONS);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(NR_OF_SESSIONS);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int session = 0; session < NR_OF_SESSIONS; session++) {
+				final String sessionPrefix = Integer.toString(session);
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						startLatch.await();
+						return fire(kieContainer, listener, sessionPrefix);
+					}
+				}));
+			}
+			startLatch.countDown();
+			for (Future<Integer> nextResult : results) {
+				assertEquals(NR_OF_EVENTS, nextResult.get().intValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(NR_OF_SESSIONS * NR_OF_EVENTS, listener.getFireCount(RULE_ONE));
+	}
+
+	/**
+	 * Inserts events that only match the first rule in a new session and fires the rules.
+	 */
+	private static int fire(KieContainer kieContainer, RuleFireCountingAgendaEventListener listener, String idPrefix) {
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			kieSession.addEventListener(listener);
+			for (int counter = 0; counter < NR_OF_EVENTS; counter++) {
+				// All events have the same timestamp and the clock is not advanced, so the 'not ... after' rule doesn't fire.
+				kieSession.insert(new SimpleEvent(idPrefix + "-" + counter, "MY_CODE", TIMESTAMP));
+			}
+			return kieSession.fireAllRules();
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	private static KieContainer newKieContainer(String artifactId) {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", artifactId, "1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("originalRules/rules.drl")));
+		return kieServices.newKieContainer(releaseId);
+	}
+
+}
@@ -0,0 +1,88 @@
+package org.jboss.ddoyle.drools.demo.metrics;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieModuleModel;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.update.IncrementalKieJarBuilder;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link UpdatePhaseTracer} and {@link RuleLatencyAgendaEventListener} with the scenario of
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateChangedRulesTest}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class UpdatePhaseTracerTest {
+
+	@Test
+	public void testUpdatePhasesAreRecorded() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-update-phase-tracer", "1.0.0");
+		ReleaseId changedReleaseId = kieServices.newReleaseId("org.kie", "test-update-phase-tracer", "1.0.1");
+
+		LatencyRecorder latencyRecorder = new LatencyRecorder();
+		UpdatePhaseTracer tracer = new UpdatePhaseTracer(latencyRecorder);
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		InternalKieModule kieModule = tracer.build(builder, releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			kieSession.addEventListener(new RuleLatencyAgendaEventListener(latencyRecorder));
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				tracer.fireAllRules(kieSession);
+			}
+
+			resources.put("rules.drl", kieServices.getResources().newClassPathResource("changedRules/rules-1.drl"));
+			kieModule = tracer.build(builder, changedReleaseId, resources);
+			tracer.update(kieServices, kieContainer, kieModule, kieSession);
+
+			assertEquals(2, latencyRecorder.getHistogram(UpdatePhaseTracer.LAYOUT_PHASE).getTotalCount());
+			assertEquals(2, latencyRecorder.getHistogram(UpdatePhaseTracer.RULE_DIFF_PHASE).getTotalCount());
+			assertEquals(2, latencyRecorder.getHistogram(UpdatePhaseTracer.COMPILE_PHASE).getTotalCount());
+			assertEquals(1, latencyRecorder.getHistogram(UpdatePhaseTracer.UPDATE_TO_VERSION_PHASE).getTotalCount());
+			assertEquals(1, latencyRecorder.getHistogram(UpdatePhaseTracer.PROPAGATION_PHASE).getTotalCount());
+			// Two calls for the first events and one for the propagation.
+			assertEquals(3, latencyRecorder.getHistogram(UpdatePhaseTracer.FIRE_ALL_RULES).getTotalCount());
+			// The first rule fired for the first 2 events. The changed rule only matches the event with id 3.
+			assertEquals(2, latencyRecorder.getHistogram(RuleLatencyAgendaEventListener.RULE_PREFIX
+					+ "org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-One").getTotalCount());
+
+			File exportFile = File.createTempFile("latencies", ".hgrm");
+			try {
+				latencyRecorder.exportTo(exportFile);
+				String export = new String(Files.readAllBytes(exportFile.toPath()), Charset.forName("UTF-8"));
+				assertTrue(export.contains("# " + UpdatePhaseTracer.PROPAGATION_PHASE));
+			} finally {
+				exportFile.delete();
+			}
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.jboss.ddoyle.drools.demo.model.v1;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.KieTestUtils.ResourceWrapper;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.conf.EqualityBehaviorOption;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+
+/**
+ * Tests the id based equality of {@link SimpleEvent} in KieBases with <code>EQUALITY</code> and <code>IDENTITY</code> behaviour.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class SimpleEventEqualityTest {
+
+	private static final long TIMESTAMP = 1424678400000L;
+
+	@Test
+	public void testEqualsOnId() {
+		assertEquals(new SimpleEvent("1", "MY_CODE", TIMESTAMP), new SimpleEvent("1", "OTHER_CODE", TIMESTAMP + 1));
+		assertEquals(new SimpleEvent("1", "MY_CODE", TIMESTAMP).hashCode(), new SimpleEvent("1", "OTHER_CODE", TIMESTAMP).hashCode());
+		assertFalse(new SimpleEvent("1", "MY_CODE", TIMESTAMP).equals(new SimpleEvent("2", "MY_CODE", TIMESTAMP)));
+		assertFalse(new SimpleEvent(null, "MY_CODE", TIMESTAMP).equals(new SimpleEvent(null, "MY_CODE", TIMESTAMP)));
+	}
+
+	/**
+	 * A duplicate insert of an event is suppressed by an <code>EQUALITY</code> KieBase, and fires the rule twice in an
+	 * <code>IDENTITY</code> KieBase.
+	 */
+	@Test
+	public void testDuplicateSuppression() {
+		assertEquals(1, insertTwice(EqualityBehaviorOption.EQUALITY, "test-equality-behaviour-equality"));
+		assertEquals(2, insertTwice(EqualityBehaviorOption.IDENTITY, "test-equality-behaviour-identity"));
+	}
+
+	private static int insertTwice(EqualityBehaviorOption equalityBehavior, String artifactId) {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", artifactId, "1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, new ResourceWrapper(kieServices.getResources().newClassPathResource(
+						"equalityBehavior/rules.drl"), "rules.drl"), equalityBehavior));
+
+		KieSession kieSession = kieServices.newKieContainer(releaseId).newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			SimpleEvent event = new SimpleEvent("1", "MY_CODE", TIMESTAMP);
+			FactHandle factHandle = kieSession.insert(event);
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("1", "MY_CODE", TIMESTAMP));
+			kieSession.fireAllRules();
+
+			if (equalityBehavior == EqualityBehaviorOption.EQUALITY) {
+				assertSame(event, kieSession.getObject(factHandle));
+			}
+			assertEquals(rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"),
+					kieSession.getFactCount());
+			return rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One");
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package org.jboss.ddoyle.drools.demo.network;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.deployAndUpdate;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.reteoo.AlphaNode;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.jboss.ddoyle.drools.demo.network.AlphaNetworkInspector.AlphaNodeIndex;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests that the alpha nodes of many rules that only differ in the literal <code>code</code> they match are hashed, and stay hashed when
+ * the literal of one of the rules is changed, like the <code>id</code> literal between <code>changedRules/rules-1.drl</code> and
+ * <code>changedRules/rules-3.drl</code>.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class AlphaNetworkInspectorTest {
+
+	private static final int NR_OF_RULES = 100;
+
+	private static final long TIMESTAMP = 1424678400000L;
+
+	@Test
+	public void testChangedLiteralKeepsAlphaNodesHashed() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-alpha-node-hashing", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId, newCodeRulesResource(kieServices, -1));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		AlphaNetworkInspector inspector = new AlphaNetworkInspector();
+
+		AlphaNodeIndex index = inspector.inspect(kieContainer.getKieBase(), SimpleEvent.class);
+		assertEquals(NR_OF_RULES, index.getHashedAlphaNodes());
+		assertEquals(0, index.getUnhashedAlphaNodes());
+		Set<AlphaNode> originalAlphaNodes = Collections.newSetFromMap(new IdentityHashMap<AlphaNode, Boolean>());
+		originalAlphaNodes.addAll(index.getAlphaNodes());
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("1", "CODE_5", TIMESTAMP));
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("2", "CODE_6", TIMESTAMP + 1000));
+			kieSession.fireAllRules();
+
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "CodeRule-5"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "CodeRule-6"));
+
+			// Change the literal of rule 5.
+			kieModule = createKieJar(kieServices, releaseId, newCodeRulesResource(kieServices, 5));
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+
+			index = inspector.inspect(kieContainer.getKieBase(), SimpleEvent.class);
+			assertEquals(NR_OF_RULES, index.getHashedAlphaNodes());
+			assertEquals(0, index.getUnhashedAlphaNodes());
+
+			// Only the alpha node of the changed rule is replaced, the alpha nodes of the other rules are the same instances. Node ids
+			// can't be compared, as Drools recycles the id of a removed node.
+			int keptAlphaNodes = 0;
+			for (AlphaNode nextAlphaNode : index.getAlphaNodes()) {
+				if (originalAlphaNodes.contains(nextAlphaNode)) {
+					keptAlphaNodes++;
+				}
+			}
+			assertEquals(NR_OF_RULES - 1, keptAlphaNodes);
+
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("3", "CODE_5", TIMESTAMP + 2000));
+			KieTestUtils.insertAndAdvance(kieSession, new SimpleEvent("4", "CHANGED_CODE_5", TIMESTAMP + 3000));
+			kieSession.fireAllRules();
+
+			// The changed rule only fires for the event with the new literal, the unchanged rules don't refire.
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "CodeRule-5"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "CodeRule-6"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * Generates a DRL with a rule per code, with the literal of the given rule changed.
+	 */
+	private static Resource newCodeRulesResource(KieServices kieServices, int changedRule) {
+		StringBuilder drl = new StringBuilder();
+		drl.append("package org.jboss.ddoyle.drools.cep.sample;\n\n");
+		drl.append("import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;\n\n");
+		drl.append("declare SimpleEvent\n    @role( event )\n    @timestamp( timestampMillis )\n    @expires( 2d )\nend\n\n");
+		for (int counter = 0; counter < NR_OF_RULES; counter++) {
+			String code = (counter == changedRule ? "CHANGED_CODE_" : "CODE_") + counter;
+			drl.append("rule \"CodeRule-").append(counter).append("\"\nwhen\n\t$s:SimpleEvent(code==\"").append(code)
+					.append("\")\nthen\nend\n\n");
+		}
+		return kieServices.getResources().newByteArrayResource(drl.toString().getBytes(Charset.forName("UTF-8")));
+	}
+
+}
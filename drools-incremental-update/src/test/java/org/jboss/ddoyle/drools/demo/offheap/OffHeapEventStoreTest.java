@@ -0,0 +1,193 @@
+package org.jboss.ddoyle.drools.demo.offheap;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link OffHeapEventStore} and its {@link OffHeapSimpleEvent} flyweights.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class OffHeapEventStoreTest {
+
+	/**
+	 * Same scenario as {@link org.jboss.ddoyle.drools.demo.KieSessionRulesOriginalRulesTest}, with the events kept off-heap.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOriginalRulesOffHeap() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-original-rules-off-heap", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("offHeap/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try (OffHeapEventStore store = OffHeapEventStore.allocateDirect()) {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			for (SimpleEvent nextEvent : TestEventsFactory.getFirstSimpleEvents()) {
+				OffHeapSimpleEvent offHeapEvent = store.append(nextEvent.getId(), nextEvent.getCode(), nextEvent.getTimestampMillis());
+				KieTestUtils.insertAndAdvance(kieSession, offHeapEvent);
+				kieSession.fireAllRules();
+			}
+
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			for (SimpleEvent nextEvent : TestEventsFactory.getSecondSimpleEvents()) {
+				OffHeapSimpleEvent offHeapEvent = store.append(nextEvent.getId(), nextEvent.getCode(), nextEvent.getTimestampMillis());
+				KieTestUtils.insertAndAdvance(kieSession, offHeapEvent);
+				kieSession.fireAllRules();
+			}
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(12, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * Tests that all id forms read back from a memory-mapped store, across a segment boundary.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMappedStoreRoundTrip() throws Exception {
+		File file = File.createTempFile("off-heap-events", ".dat");
+		try (OffHeapEventStore store = OffHeapEventStore.map(file)) {
+			String uuid = UUID.randomUUID().toString();
+			for (int index = 0; index < OffHeapEventStore.SEGMENT_RECORDS; index++) {
+				store.append(Integer.toString(index), "MY_CODE", index);
+			}
+			store.append(uuid, "OTHER_CODE", 1L);
+			store.append("not-a-uuid", null, 2L);
+			store.append(null, "MY_CODE", 3L);
+
+			assertEquals(OffHeapEventStore.SEGMENT_RECORDS + 3, store.size());
+
+			OffHeapSimpleEvent lastOfFirstSegment = store.get(OffHeapEventStore.SEGMENT_RECORDS - 1);
+			assertEquals(Integer.toString(OffHeapEventStore.SEGMENT_RECORDS - 1), lastOfFirstSegment.getId());
+			assertEquals(OffHeapEventStore.SEGMENT_RECORDS - 1, lastOfFirstSegment.getTimestampMillis());
+
+			OffHeapSimpleEvent uuidEvent = store.get(OffHeapEventStore.SEGMENT_RECORDS);
+			assertEquals(uuid, uuidEvent.getId());
+			assertEquals("OTHER_CODE", uuidEvent.getCode());
+			assertEquals(1L, uuidEvent.getTimestampMillis());
+
+			OffHeapSimpleEvent heapIdEvent = store.get(OffHeapEventStore.SEGMENT_RECORDS + 1);
+			assertEquals("not-a-uuid", heapIdEvent.getId());
+			assertNull(heapIdEvent.getCode());
+
+			assertNull(store.get(OffHeapEventStore.SEGMENT_RECORDS + 2).getId());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Tests that the leading segments of which all events are before the given timestamp are released, and that their direct memory is
+	 * freed.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReleaseBefore() throws Exception {
+		long segmentBytes = (long) OffHeapEventStore.SEGMENT_RECORDS * OffHeapEventStore.RECORD_SIZE;
+		BufferPoolMXBean directPool = getDirectBufferPool();
+
+		try (OffHeapEventStore store = OffHeapEventStore.allocateDirect()) {
+			int nrOfEvents = 2 * OffHeapEventStore.SEGMENT_RECORDS + 1;
+			for (int index = 0; index < nrOfEvents; index++) {
+				store.append((index == 0) ? "not-a-uuid" : Integer.toString(index), "MY_CODE", index);
+			}
+			assertEquals(3 * segmentBytes, store.getAllocatedBytes());
+			long allocatedDirectBytes = directPool.getMemoryUsed();
+
+			// The first segment still has an event at the given timestamp.
+			assertEquals(0, store.releaseBefore(OffHeapEventStore.SEGMENT_RECORDS - 1));
+			assertEquals(OffHeapEventStore.SEGMENT_RECORDS, store.releaseBefore(OffHeapEventStore.SEGMENT_RECORDS));
+			assertEquals(OffHeapEventStore.SEGMENT_RECORDS, store.getFirstIndex());
+			assertEquals(2 * segmentBytes, store.getAllocatedBytes());
+			assertEquals(nrOfEvents, store.size());
+			try {
+				store.get(0);
+				fail("Released event should not be readable.");
+			} catch (IllegalStateException ise) {
+				// Expected.
+			}
+			assertEquals(Integer.toString(OffHeapEventStore.SEGMENT_RECORDS), store.get(OffHeapEventStore.SEGMENT_RECORDS).getId());
+
+			// The segment that is appended to is never released.
+			assertEquals(OffHeapEventStore.SEGMENT_RECORDS, store.releaseBefore(Long.MAX_VALUE));
+			assertEquals(segmentBytes, store.getAllocatedBytes());
+			assertEquals(Integer.toString(nrOfEvents - 1), store.get(nrOfEvents - 1).getId());
+
+			// The direct buffers of the released segments are freed once they are garbage collected.
+			for (int attempt = 0; attempt < 10 && directPool.getMemoryUsed() > allocatedDirectBytes - 2 * segmentBytes; attempt++) {
+				System.gc();
+				Thread.sleep(100);
+			}
+			assertTrue(directPool.getMemoryUsed() <= allocatedDirectBytes - 2 * segmentBytes);
+		}
+	}
+
+	@Test
+	public void testFlyweightIsNotSerializable() throws Exception {
+		try (OffHeapEventStore store = OffHeapEventStore.allocateDirect()) {
+			OffHeapSimpleEvent event = store.append("1", "MY_CODE", 1L);
+			try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+				out.writeObject(event);
+				fail("Off-heap event should not be serializable.");
+			} catch (NotSerializableException nse) {
+				// Expected.
+			}
+		}
+	}
+
+	private static BufferPoolMXBean getDirectBufferPool() {
+		for (BufferPoolMXBean nextPool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if ("direct".equals(nextPool.getName())) {
+				return nextPool;
+			}
+		}
+		throw new IllegalStateException("No direct buffer pool found.");
+	}
+
+}
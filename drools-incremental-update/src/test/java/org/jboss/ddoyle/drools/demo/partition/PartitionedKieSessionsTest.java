@@ -0,0 +1,111 @@
+package org.jboss.ddoyle.drools.demo.partition;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.jboss.ddoyle.drools.demo.update.FanOutSessionUpdater.FanOutResult;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+
+/**
+ * Tests the {@link PartitionedKieSessions} with the scenario of
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAddedRulesTest#testAddedRulesSameDrl()}, with the events of another
+ * code in a second partition. The rules of <code>partitionedRules</code> only correlate events of the same code, so the partitions give the
+ * same results as a single session with these rules.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class PartitionedKieSessionsTest {
+
+	private static final String OTHER_CODE = "YOUR_CODE";
+
+	@Test
+	public void testPartitionedUpdate() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-partitioned-sessions", "1.0.0");
+		ReleaseId newReleaseId = kieServices.newReleaseId("org.kie", "test-partitioned-sessions", "1.0.1");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("partitionedRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		PartitionedKieSessions partitionedKieSessions = new PartitionedKieSessions(kieContainer, 2, new SimpleEventCodeKeyExtractor());
+		try {
+			int myPartition = partitionedKieSessions.getPartition("MY_CODE");
+			int otherPartition = partitionedKieSessions.getPartition(OTHER_CODE);
+			assertNotEquals(myPartition, otherPartition);
+
+			RulesFiredAgendaEventListener myRulesFiredListener = new RulesFiredAgendaEventListener();
+			partitionedKieSessions.getKieSession(myPartition).addEventListener(myRulesFiredListener);
+			RulesFiredAgendaEventListener otherRulesFiredListener = new RulesFiredAgendaEventListener();
+			partitionedKieSessions.getKieSession(otherPartition).addEventListener(otherRulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			Future<Integer> rulesFired = null;
+			for (Event nextEvent : firstEvents) {
+				rulesFired = partitionedKieSessions.insert(nextEvent);
+			}
+			Future<Integer> otherRulesFired = partitionedKieSessions.insert(new SimpleEvent("10", OTHER_CODE, new SimpleDateFormat(
+					"yyyyMMdd:HHmmssSSS").parse("20150223:090002000")));
+			// A partition processes its events in order, so waiting for its last event waits for all its events.
+			rulesFired.get();
+			otherRulesFired.get();
+
+			assertEquals(2, myRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(0, myRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(0, otherRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, partitionedKieSessions.getKieSession(otherPartition).getFactCount());
+
+			kieModule = createKieJar(kieServices, newReleaseId, kieServices.getResources().newClassPathResource("partitionedRules/added-rules.drl"));
+			kieServices.getRepository().addKieModule(kieModule);
+
+			FanOutResult result = partitionedKieSessions.update(newReleaseId, null);
+			assertTrue(result.isSuccessful());
+			assertEquals(Integer.valueOf(2), result.getRulesFired().get(partitionedKieSessions.getKieSession(myPartition)));
+			assertEquals(Integer.valueOf(0), result.getRulesFired().get(partitionedKieSessions.getKieSession(otherPartition)));
+
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+			for (Event nextEvent : secondEvents) {
+				rulesFired = partitionedKieSessions.insert(nextEvent);
+			}
+			// Within 10 seconds after the last MY_CODE event. It would block SimpleTestRule-Two of originalRules in a single session.
+			otherRulesFired = partitionedKieSessions.insert(new SimpleEvent("11", OTHER_CODE, new SimpleDateFormat("yyyyMMdd:HHmmssSSS")
+					.parse("20150223:090022000")));
+			rulesFired.get();
+			otherRulesFired.get();
+
+			assertEquals(3, myRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, myRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(3, myRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+
+			long lastTimestamp = Events.getTimestampMillis(secondEvents.get(secondEvents.size() - 1));
+			for (Future<Integer> nextRulesFired : partitionedKieSessions.advanceTo(lastTimestamp + 12000)) {
+				nextRulesFired.get();
+			}
+
+			assertEquals(2, myRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(0, otherRulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+			assertEquals(2, partitionedKieSessions.getKieSession(otherPartition).getFactCount());
+		} finally {
+			partitionedKieSessions.close();
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.deployAndUpdate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link BudgetedRuleFirer} with the scenario of
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAddedRulesTest#testAddedRulesSameDrl()}, where the catch-up of the
+ * added rule is fired one rule at a time, interleaved with the insert of the third event.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class BudgetedRuleFirerTest {
+
+	@Test
+	public void testAddedRuleCatchUpInSlices() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-budgeted-rule-firer", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			kieModule = createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl"));
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+
+			BudgetedRuleFirer firer = new BudgetedRuleFirer(kieSession, 1);
+			int rulesFired = 0;
+			for (Event nextEvent : TestEventsFactory.getSecondSimpleEvents()) {
+				rulesFired += firer.insertAndFire(nextEvent);
+			}
+			assertEquals(1, rulesFired);
+			assertTrue(firer.isBacklogged());
+
+			// Work off the backlog: rule Three for the 3 events, rule One for the third event and rule Two for the second event.
+			int nrOfFires = 1;
+			while (firer.isBacklogged()) {
+				int sliceFired = firer.fire();
+				assertTrue(sliceFired <= 1);
+				rulesFired += sliceFired;
+				nrOfFires++;
+			}
+			assertEquals(5, rulesFired);
+			assertTrue(nrOfFires >= 5);
+			assertFalse(firer.isBacklogged());
+			assertEquals(0, firer.drain());
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * With an unbounded fireAllRules() right after the update, the backlog of the added rule fires first. With a budget, the match of rule
+	 * One for the event inserted after the update, and the match of rule Two it triggers, fire ahead of that backlog, as those rules were
+	 * loaded before the added rule.
+	 */
+	@Test
+	public void testNewMatchesFireAheadOfBacklog() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-budgeted-rule-firer-order", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			final List<String> firedRules = new ArrayList<>();
+			kieSession.addEventListener(new DefaultAgendaEventListener() {
+				@Override
+				public void afterMatchFired(AfterMatchFiredEvent event) {
+					firedRules.add(event.getMatch().getRule().getName());
+				}
+			});
+
+			kieModule = createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl"));
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+
+			BudgetedRuleFirer firer = new BudgetedRuleFirer(kieSession, 1);
+			for (Event nextEvent : TestEventsFactory.getSecondSimpleEvents()) {
+				firer.insertAndFire(nextEvent);
+			}
+			firer.drain();
+
+			assertEquals(Arrays.asList("SimpleTestRule-One", "SimpleTestRule-Two", "SimpleTestRule-Three", "SimpleTestRule-Three",
+					"SimpleTestRule-Three"), firedRules);
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+}
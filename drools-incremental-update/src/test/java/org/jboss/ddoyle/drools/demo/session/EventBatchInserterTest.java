@@ -0,0 +1,186 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link EventBatchInserter}. Inserting the events in batches must give the same results as
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesOriginalRulesTest}, where the clock is advanced and the rules are fired per event.
+ * The clock advance interval is the 10 seconds window of the <code>not ... after [0,10s]</code> of the second rule, the maximum fire
+ * interval is smaller than the 2 days <code>@expires</code> of <code>SimpleEvent</code>.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class EventBatchInserterTest {
+
+	private static final long CLOCK_ADVANCE_INTERVAL_MILLIS = 10000;
+
+	private static final long MAX_FIRE_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private static final long TIMESTAMP = 1424678400000L;
+
+	/**
+	 * Inserts the first and second events as 2 batches.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOriginalRulesInBatches() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-original-rules-batches", "1.0.0");
+
+		KieSession kieSession = newKieSession(kieServices, releaseId);
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			assertEquals(2, KieTestUtils.insertAndFire(kieSession, TestEventsFactory.getFirstSimpleEvents(), CLOCK_ADVANCE_INTERVAL_MILLIS,
+					MAX_FIRE_INTERVAL_MILLIS));
+
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			assertEquals(2, KieTestUtils.insertAndFire(kieSession, TestEventsFactory.getSecondSimpleEvents(), CLOCK_ADVANCE_INTERVAL_MILLIS,
+					MAX_FIRE_INTERVAL_MILLIS));
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(12, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * Inserts all events as a single batch. The third event is more than 10 seconds ahead of the clock, so the clock is advanced to the
+	 * second event before the third event is inserted. The timer of the second event's <code>not</code> expires when the clock is advanced
+	 * to the third event at the end of the batch.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOriginalRulesInSingleBatch() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-original-rules-single-batch", "1.0.0");
+
+		KieSession kieSession = newKieSession(kieServices, releaseId);
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<Event> events = new ArrayList<>();
+			events.addAll(TestEventsFactory.getFirstSimpleEvents());
+			events.addAll(TestEventsFactory.getSecondSimpleEvents());
+
+			assertEquals(4, KieTestUtils.insertAndFire(kieSession, events, CLOCK_ADVANCE_INTERVAL_MILLIS, MAX_FIRE_INTERVAL_MILLIS));
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * Inserts a batch that spans more than the 2 days <code>@expires</code> of <code>SimpleEvent</code>. The first event expires when the
+	 * clock is advanced to the last event, so the rules must be fired before that, as they are when the events are inserted one by one.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchSpanningExpiration() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-original-rules-batch-spanning-expiration", "1.0.0");
+
+		List<Event> events = new ArrayList<>();
+		events.add(new SimpleEvent("1", "MY_CODE", TIMESTAMP));
+		events.add(new SimpleEvent("2", "OTHER_CODE", TIMESTAMP + TimeUnit.DAYS.toMillis(3)));
+
+		KieSession perEventSession = newKieSession(kieServices, releaseId);
+		KieSession batchSession = kieServices.newKieContainer(releaseId).newKieSession();
+		try {
+			RulesFiredAgendaEventListener perEventListener = new RulesFiredAgendaEventListener();
+			perEventSession.addEventListener(perEventListener);
+			for (Event nextEvent : events) {
+				KieTestUtils.insertAndAdvance(perEventSession, nextEvent);
+				perEventSession.fireAllRules();
+			}
+
+			RulesFiredAgendaEventListener batchListener = new RulesFiredAgendaEventListener();
+			batchSession.addEventListener(batchListener);
+			KieTestUtils.insertAndFire(batchSession, events, CLOCK_ADVANCE_INTERVAL_MILLIS, MAX_FIRE_INTERVAL_MILLIS);
+
+			assertEquals(1, perEventListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, batchListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(perEventListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"),
+					batchListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(perEventSession.getFactCount(), batchSession.getFactCount());
+		} finally {
+			perEventSession.dispose();
+			batchSession.dispose();
+		}
+	}
+
+	/**
+	 * Events that are not sorted on timestamp are rejected, without inserting any event of the batch or advancing the clock.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnsortedEvents() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-original-rules-unsorted-batch", "1.0.0");
+
+		KieSession kieSession = newKieSession(kieServices, releaseId);
+		try {
+			List<Event> events = new ArrayList<>();
+			events.addAll(TestEventsFactory.getSecondSimpleEvents());
+			events.addAll(TestEventsFactory.getFirstSimpleEvents());
+
+			long clockTime = kieSession.getSessionClock().getCurrentTime();
+			try {
+				new EventBatchInserter(kieSession, CLOCK_ADVANCE_INTERVAL_MILLIS, MAX_FIRE_INTERVAL_MILLIS).insertAndFire(events);
+				fail("Unsorted events should be rejected.");
+			} catch (IllegalArgumentException iae) {
+				// Expected.
+			}
+			assertEquals(0, kieSession.getFactCount());
+			assertEquals(clockTime, kieSession.getSessionClock().getCurrentTime());
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	private static KieSession newKieSession(KieServices kieServices, ReleaseId releaseId) {
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		return kieContainer.newKieSession();
+	}
+
+}
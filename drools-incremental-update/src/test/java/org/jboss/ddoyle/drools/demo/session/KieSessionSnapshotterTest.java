@@ -0,0 +1,109 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.model.v1.Events;
+import org.jboss.ddoyle.drools.demo.session.KieSessionSnapshotter.RestoredSession;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link KieSessionSnapshotter} with the scenario of
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAddedRulesTest#testAddedRulesSameDrl()}, where the session is
+ * snapshotted before the update and restored in the new version.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class KieSessionSnapshotterTest {
+
+	/**
+	 * The added rule fires for the events in the snapshot, the existing rules don't re-fire. The pending timer of the <code>not</code> of
+	 * the second rule is restored with the session.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRestoreInNewVersion() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-session-snapshot", "1.0.0");
+		ReleaseId newReleaseId = kieServices.newReleaseId("org.kie", "test-session-snapshot", "1.0.1");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieSessionSnapshotter snapshotter = new KieSessionSnapshotter(kieServices);
+		File snapshotFile = File.createTempFile("session", ".snapshot");
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			snapshotter.write(kieContainer, kieSession, snapshotFile);
+		} finally {
+			kieSession.dispose();
+		}
+
+		kieModule = createKieJar(kieServices, newReleaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		RestoredSession restoredSession = snapshotter.restore(snapshotFile, newReleaseId);
+		KieSession restoredKieSession = restoredSession.getKieSession();
+		try {
+			assertEquals(releaseId, restoredSession.getSnapshotReleaseId());
+			assertEquals(newReleaseId, restoredSession.getKieContainer().getReleaseId());
+			assertEquals(2, restoredKieSession.getFactCount());
+			assertEquals(getTimestampOfLastFirstEvent(), restoredKieSession.getSessionClock().getCurrentTime());
+
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			restoredKieSession.addEventListener(rulesFiredListener);
+			restoredKieSession.fireAllRules();
+
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+			for (Event nextEvent : secondEvents) {
+				KieTestUtils.insertAndAdvance(restoredKieSession, nextEvent);
+				restoredKieSession.fireAllRules();
+			}
+
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+
+			((PseudoClockScheduler) restoredKieSession.getSessionClock()).advanceTime(12, TimeUnit.SECONDS);
+			restoredKieSession.fireAllRules();
+
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			restoredKieSession.dispose();
+			snapshotFile.delete();
+		}
+	}
+
+	private static long getTimestampOfLastFirstEvent() throws Exception {
+		List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+		return Events.getTimestampMillis(firstEvents.get(firstEvents.size() - 1));
+	}
+
+}
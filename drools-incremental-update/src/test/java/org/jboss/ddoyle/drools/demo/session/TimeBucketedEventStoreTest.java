@@ -0,0 +1,95 @@
+package org.jboss.ddoyle.drools.demo.session;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link TimeBucketedEventStore} with the original rules, without <code>@expires</code>. The rules must fire as in
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesOriginalRulesTest}, after which the events are retracted per bucket.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class TimeBucketedEventStoreTest {
+
+	private static final long RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	private static final long BUCKET_SIZE_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+	@Test
+	public void testBucketedRetraction() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-bucketed-expiration", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("bucketedExpiration/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			TimeBucketedEventStore eventStore = new TimeBucketedEventStore(kieSession, RETENTION_MILLIS, BUCKET_SIZE_MILLIS);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				assertEquals(0, KieTestUtils.insertAndAdvance(eventStore, nextEvent));
+				kieSession.fireAllRules();
+			}
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+			for (Event nextEvent : secondEvents) {
+				assertEquals(0, KieTestUtils.insertAndAdvance(eventStore, nextEvent));
+				kieSession.fireAllRules();
+			}
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(12, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			// Events 1 and 2 are in the 09:00:00 bucket, event 3 in the 09:00:20 bucket.
+			assertEquals(3, kieSession.getFactCount());
+			assertEquals(2, eventStore.getBucketCount());
+
+			long firstBucketEnd = TestEventsFactory.getFirstSimpleEvents().get(0).getTimestampMillis() + BUCKET_SIZE_MILLIS;
+			long secondBucketEnd = firstBucketEnd + 2 * BUCKET_SIZE_MILLIS;
+			// The first bucket expires at 09:01:10.
+			assertEquals(2, eventStore.advanceTo(firstBucketEnd + RETENTION_MILLIS));
+			assertEquals(1, kieSession.getFactCount());
+			assertEquals(1, eventStore.getEventCount());
+
+			// The second bucket expires at 09:01:30.
+			assertEquals(1, eventStore.advanceTo(secondBucketEnd + RETENTION_MILLIS));
+			assertEquals(0, kieSession.getFactCount());
+			assertEquals(0, eventStore.getBucketCount());
+
+			kieSession.fireAllRules();
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link DrlRuleFingerprinter}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class DrlRuleFingerprinterTest {
+
+	private static final String PACKAGE = "package org.jboss.ddoyle.drools.cep.sample;\n\n"
+			+ "import org.jboss.ddoyle.drools.demo.model.v1.SimpleEvent;\n\n";
+
+	private final DrlRuleFingerprinter fingerprinter = new DrlRuleFingerprinter();
+
+	/**
+	 * The content hash doesn't depend on the rule name, also not for names that occur in the '<code>rule</code>' keyword.
+	 */
+	@Test
+	public void testContentHashIgnoresShortRuleNames() {
+		String contentHash = contentHash("SimpleTestRule-One");
+		assertEquals(contentHash, contentHash("r"));
+		assertEquals(contentHash, contentHash("u"));
+		assertEquals(contentHash, contentHash("le"));
+	}
+
+	private String contentHash(String ruleName) {
+		List<RuleFingerprint> fingerprints = fingerprinter.fingerprint(PACKAGE + "rule \"" + ruleName + "\"\nwhen\n"
+				+ "\t$s:SimpleEvent(code==\"MY_CODE\")\nthen\nend\n");
+		assertEquals(1, fingerprints.size());
+		return fingerprints.get(0).getContentHash();
+	}
+
+}
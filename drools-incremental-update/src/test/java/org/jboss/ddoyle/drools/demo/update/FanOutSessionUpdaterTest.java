@@ -0,0 +1,280 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.update.FanOutSessionUpdater.FanOutResult;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link FanOutSessionUpdater} with the scenario of
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAddedRulesTest#testAddedRulesSameDrl()}, for multiple sessions of
+ * the same container.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class FanOutSessionUpdaterTest {
+
+	private static final int NR_OF_SESSIONS = 5;
+
+	@Test
+	public void testAddedRuleFiresInAllSessions() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-fan-out-update", "1.0.0");
+		ReleaseId newReleaseId = kieServices.newReleaseId("org.kie", "test-fan-out-update", "1.0.1");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		List<KieSession> kieSessions = new ArrayList<>();
+		List<RulesFiredAgendaEventListener> rulesFiredListeners = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int counter = 0; counter < NR_OF_SESSIONS; counter++) {
+				KieSession kieSession = kieContainer.newKieSession();
+				kieSessions.add(kieSession);
+				RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+				kieSession.addEventListener(rulesFiredListener);
+				rulesFiredListeners.add(rulesFiredListener);
+
+				List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+				for (Event nextEvent : firstEvents) {
+					KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+					kieSession.fireAllRules();
+				}
+			}
+
+			kieModule = createKieJar(kieServices, newReleaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl"));
+			kieServices.getRepository().addKieModule(kieModule);
+
+			final AtomicInteger kieBaseUpdates = new AtomicInteger();
+			final AtomicInteger maxCompleted = new AtomicInteger();
+			FanOutResult result = new FanOutSessionUpdater(kieContainer, executor).update(newReleaseId, kieSessions,
+					new SessionUpdateProgressListener() {
+
+						@Override
+						public void kieBaseUpdated(Results results, long updateNanos) {
+							kieBaseUpdates.incrementAndGet();
+						}
+
+						@Override
+						public void sessionUpdated(KieSession kieSession, int rulesFired, int completed, int total) {
+							assertEquals(NR_OF_SESSIONS, total);
+							synchronized (maxCompleted) {
+								maxCompleted.set(Math.max(maxCompleted.get(), completed));
+							}
+						}
+
+						@Override
+						public void sessionFailed(KieSession kieSession, Throwable cause, int completed, int total) {
+						}
+					});
+
+			assertTrue(result.isSuccessful());
+			assertEquals(1, kieBaseUpdates.get());
+			assertEquals(NR_OF_SESSIONS, maxCompleted.get());
+			assertEquals(NR_OF_SESSIONS, result.getRulesFired().size());
+			for (int counter = 0; counter < NR_OF_SESSIONS; counter++) {
+				// Only the added rule fires, for the 2 events that were already in the session.
+				assertEquals(Integer.valueOf(2), result.getRulesFired().get(kieSessions.get(counter)));
+				RulesFiredAgendaEventListener rulesFiredListener = rulesFiredListeners.get(counter);
+				assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+				assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+			}
+		} finally {
+			executor.shutdown();
+			for (KieSession nextKieSession : kieSessions) {
+				nextKieSession.dispose();
+			}
+		}
+	}
+
+	/**
+	 * An {@link Error} thrown while catching up a session is reported as a failure of that session, and still counts as completed.
+	 */
+	@Test
+	public void testErrorInCatchUpIsReported() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		KieContainer kieContainer = newKieContainer(kieServices, "test-fan-out-update-error");
+
+		List<KieSession> kieSessions = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int counter = 0; counter < NR_OF_SESSIONS; counter++) {
+				kieSessions.add(newKieSession(kieContainer));
+			}
+			final KieSession failingKieSession = kieSessions.get(0);
+			failingKieSession.addEventListener(new DefaultAgendaEventListener() {
+				@Override
+				public void beforeMatchFired(BeforeMatchFiredEvent event) {
+					throw new AssertionError("Failing catch-up.");
+				}
+			});
+
+			final AtomicInteger maxCompleted = new AtomicInteger();
+			final AtomicReference<Throwable> failure = new AtomicReference<>();
+			FanOutResult result = new FanOutSessionUpdater(kieContainer, executor).update(deployAddedRules(kieServices,
+					"test-fan-out-update-error"), kieSessions, new SessionUpdateProgressListener() {
+
+				@Override
+				public void kieBaseUpdated(Results results, long updateNanos) {
+				}
+
+				@Override
+				public void sessionUpdated(KieSession kieSession, int rulesFired, int completed, int total) {
+					updateMax(completed);
+				}
+
+				@Override
+				public void sessionFailed(KieSession kieSession, Throwable cause, int completed, int total) {
+					failure.set(cause);
+					updateMax(completed);
+				}
+
+				private void updateMax(int completed) {
+					synchronized (maxCompleted) {
+						maxCompleted.set(Math.max(maxCompleted.get(), completed));
+					}
+				}
+			});
+
+			assertFalse(result.isSuccessful());
+			assertTrue(failure.get() instanceof AssertionError);
+			assertTrue(result.getFailures().get(failingKieSession) instanceof AssertionError);
+			assertEquals(NR_OF_SESSIONS - 1, result.getRulesFired().size());
+			assertEquals(NR_OF_SESSIONS, maxCompleted.get());
+		} finally {
+			executor.shutdown();
+			for (KieSession nextKieSession : kieSessions) {
+				nextKieSession.dispose();
+			}
+		}
+	}
+
+	/**
+	 * When the caller is interrupted, the update waits for the running catch-up and skips the catch-ups that have not started.
+	 */
+	@Test
+	public void testInterruptWaitsForRunningCatchUp() throws Exception {
+		final KieServices kieServices = KieServices.Factory.get();
+		final KieContainer kieContainer = newKieContainer(kieServices, "test-fan-out-update-interrupt");
+
+		final List<KieSession> kieSessions = new ArrayList<>();
+		final List<RulesFiredAgendaEventListener> rulesFiredListeners = new ArrayList<>();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			for (int counter = 0; counter < NR_OF_SESSIONS; counter++) {
+				KieSession kieSession = newKieSession(kieContainer);
+				kieSessions.add(kieSession);
+				RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+				kieSession.addEventListener(rulesFiredListener);
+				rulesFiredListeners.add(rulesFiredListener);
+			}
+
+			final CountDownLatch catchUpStarted = new CountDownLatch(1);
+			final CountDownLatch releaseCatchUp = new CountDownLatch(1);
+			final KieSession blockingKieSession = kieSessions.get(0);
+			blockingKieSession.addEventListener(new DefaultAgendaEventListener() {
+				@Override
+				public void beforeMatchFired(BeforeMatchFiredEvent event) {
+					catchUpStarted.countDown();
+					try {
+						releaseCatchUp.await();
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+
+			final ReleaseId newReleaseId = deployAddedRules(kieServices, "test-fan-out-update-interrupt");
+			final AtomicBoolean interrupted = new AtomicBoolean();
+			final AtomicBoolean returned = new AtomicBoolean();
+			Thread updaterThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						new FanOutSessionUpdater(kieContainer, executor).update(newReleaseId, kieSessions, null);
+					} catch (InterruptedException ie) {
+						interrupted.set(true);
+					}
+					returned.set(true);
+				}
+			});
+			updaterThread.start();
+
+			catchUpStarted.await();
+			updaterThread.interrupt();
+			updaterThread.join(500);
+			// The first session is still being caught up.
+			assertFalse(returned.get());
+
+			releaseCatchUp.countDown();
+			updaterThread.join();
+			assertTrue(interrupted.get());
+			assertEquals(2, rulesFiredListeners.get(0).getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+			for (int counter = 1; counter < NR_OF_SESSIONS; counter++) {
+				// Skipped, the added rule fires on the next fireAllRules of the session.
+				assertEquals(0, rulesFiredListeners.get(counter).getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-"
+						+ "SimpleTestRule-Three"));
+			}
+		} finally {
+			executor.shutdown();
+			for (KieSession nextKieSession : kieSessions) {
+				nextKieSession.dispose();
+			}
+		}
+	}
+
+	private static KieContainer newKieContainer(KieServices kieServices, String artifactId) {
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", artifactId, "1.0.0");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("originalRules/rules.drl")));
+		return kieServices.newKieContainer(releaseId);
+	}
+
+	/**
+	 * @return a new session of the container with the first events.
+	 */
+	private static KieSession newKieSession(KieContainer kieContainer) {
+		KieSession kieSession = kieContainer.newKieSession();
+		for (Event nextEvent : TestEventsFactory.getFirstSimpleEvents()) {
+			KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+			kieSession.fireAllRules();
+		}
+		return kieSession;
+	}
+
+	private static ReleaseId deployAddedRules(KieServices kieServices, String artifactId) {
+		ReleaseId newReleaseId = kieServices.newReleaseId("org.kie", artifactId, "1.0.1");
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, newReleaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl")));
+		return newReleaseId;
+	}
+
+}
@@ -0,0 +1,488 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieModuleModel;
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.deployAndUpdate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.common.InternalWorkingMemory;
+import org.drools.core.common.Memory;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.core.reteoo.AccumulateNode;
+import org.drools.core.reteoo.ObjectSink;
+import org.drools.core.reteoo.ObjectTypeNode;
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAccumulateTest.AccumulateCount;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link IncrementalKieJarBuilder}. The KJARs it builds must give the same incremental update semantics as KJARs built from
+ * scratch, while only the changed resources are recompiled.
+ * 
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class IncrementalKieJarBuilderTest {
+
+	/**
+	 * Same scenario as {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateChangedRulesTest}, where the first rule gets an
+	 * additional constraint. Only the changed DRL is recompiled, the other DRL in the KJAR is reused.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangedResourceOnlyIsRecompiled() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder", "1.0.0");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		resources.put("other-rules.drl", kieServices.getResources().newClassPathResource("incrementalBuild/other-rules.drl"));
+
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		assertEquals(2, builder.getLastCompiledResources().size());
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			// Rebuilding the same resources doesn't compile anything.
+			builder.build(releaseId, resources);
+			assertEquals(Collections.emptyList(), builder.getLastCompiledResources());
+
+			resources.put("rules.drl", kieServices.getResources().newClassPathResource("changedRules/rules-1.drl"));
+			kieModule = builder.build(releaseId, resources);
+			assertEquals(Arrays.asList("src/main/resources/rules.drl"), builder.getLastCompiledResources());
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+
+			for (Event nextEvent : secondEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			// The third event will match with the first rule, as its id == 3.
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(12, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "OtherTestRule-One"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * A built version doesn't change when the next version is built, so a container created from it afterwards has the rules of that version,
+	 * and the <code>pom.properties</code> of every version has the version's {@link ReleaseId}.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBuiltVersionsAreImmutable() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-immutable", "1.0.0");
+		ReleaseId nextReleaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-immutable", "1.0.1");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("addedRules/rules.drl"));
+		InternalKieModule nextKieModule = builder.build(nextReleaseId, resources);
+		kieServices.getRepository().addKieModule(nextKieModule);
+
+		String pomProperties = new String(
+				nextKieModule.getBytes("META-INF/maven/org.kie/test-incremental-kjar-builder-immutable/pom.properties"), "UTF-8");
+		assertTrue(pomProperties.contains("version=1.0.1"));
+
+		// The first version is only compiled now, after the next version has been built, and doesn't get the added rule.
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		assertNotNull(kieContainer.getKieBase().getRule("org.jboss.ddoyle.drools.cep.sample", "SimpleTestRule-One"));
+		assertNull(kieContainer.getKieBase().getRule("org.jboss.ddoyle.drools.cep.sample", "SimpleTestRule-Three"));
+
+		KieContainer nextKieContainer = kieServices.newKieContainer(nextReleaseId);
+		assertNotNull(nextKieContainer.getKieBase().getRule("org.jboss.ddoyle.drools.cep.sample", "SimpleTestRule-Three"));
+	}
+
+	/**
+	 * Same scenario as {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateDifferentDrlTest#testRulesInDifferentDrl()},
+	 * where the rules are moved to a DRL with a different name. With the rules preserved on resource rename, the moved DRL is deployed
+	 * under the path of the original DRL, so the unchanged rules do NOT refire for the events that were already in WM.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRenamedResourcePreservesRules() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-renamed-drl", "1.0.0");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+		builder.setPreserveRulesOnResourceRename(true);
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("originalRules.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(0, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+
+			resources.clear();
+			resources.put("newOriginalRules.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+			kieModule = builder.build(releaseId, resources);
+
+			// The renamed DRL is deployed under its original path, so there's nothing to compile and no rule has changed.
+			assertEquals(Collections.emptyList(), builder.getLastCompiledResources());
+			assertEquals(Collections.emptyList(), builder.getLastRuleDiff().getAddedRules());
+			assertEquals(Collections.emptyList(), builder.getLastRuleDiff().getRemovedRules());
+			assertEquals(2, builder.getLastRuleDiff().getUnchangedRules().size());
+
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+			for (Event nextEvent : secondEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			// Rules will only fire for new events.
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * A DRL that is renamed is still deployed under its original path. When a later version adds a new DRL with that original path, the
+	 * new DRL is deployed under a free path.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testNewResourceWithPathOfRenamedResource() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-reused-path", "1.0.0");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+		builder.setPreserveRulesOnResourceRename(true);
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("a.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		builder.build(releaseId, resources);
+
+		resources.clear();
+		resources.put("b.drl", kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		builder.build(releaseId, resources);
+		assertEquals(Collections.emptyList(), builder.getLastCompiledResources());
+
+		resources.put("a.drl", kieServices.getResources().newClassPathResource("incrementalBuild/other-rules.drl"));
+		builder.build(releaseId, resources);
+		assertEquals(Arrays.asList("src/main/resources/a-1.drl"), builder.getLastCompiledResources());
+		assertEquals(Arrays.asList("org.jboss.ddoyle.drools.cep.sample-OtherTestRule-One"), ruleIds(builder.getLastRuleDiff().getAddedRules()));
+		assertEquals(2, builder.getLastRuleDiff().getUnchangedRules().size());
+	}
+
+	/**
+	 * Same scenario as {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAccumulateTest#testRenamedRuleAccumulate()},
+	 * where the accumulate rule is renamed. The bridge version adds the renamed rule while the original rule is still in the KieBase, so the
+	 * renamed rule shares the original accumulate node and its memory. The renamed rule fires for the 2 existing matches on the bridge
+	 * update and, as the accumulate result changes on the third event, for all 3 events after that. As these counts are the same when the
+	 * accumulate memory is rebuilt from working memory, the test also asserts that the accumulate node and its memory are the same objects
+	 * before and after the updates.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRenamedAccumulateRuleKeepsAccumulateMemory() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-renamed-accumulate", "1.0.0");
+		ReleaseId bridgeReleaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-renamed-accumulate", "1.0.1");
+		ReleaseId renamedReleaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-renamed-accumulate", "1.0.2");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("accumulateRules/original-rules.drl"));
+
+		// Nothing is renamed in the first version.
+		assertNull(builder.buildRenameBridge(bridgeReleaseId, resources));
+
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		AccumulateCount accCount = new AccumulateCount();
+		kieSession.setGlobal("accCount", accCount);
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, accCount.getValue());
+
+			AccumulateNode accumulateNode = findAccumulateNode(kieSession);
+			Memory accumulateMemory = ((InternalWorkingMemory) kieSession).getNodeMemory(accumulateNode);
+
+			resources.put("rules.drl", kieServices.getResources().newClassPathResource("accumulateRules/renamed-rules.drl"));
+
+			InternalKieModule bridgeKieModule = builder.buildRenameBridge(bridgeReleaseId, resources);
+			assertEquals(Arrays.asList("org.jboss.ddoyle.drools.cep.sample-Bla"), ruleIds(builder.getLastRuleDiff().getAddedRules()));
+			assertEquals(Collections.emptyList(), builder.getLastRuleDiff().getRemovedRules());
+			deployAndUpdate(kieServices, kieContainer, bridgeKieModule);
+			kieSession.fireAllRules();
+
+			kieModule = builder.build(renamedReleaseId, resources);
+			assertEquals(Arrays.asList("org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-One"),
+					ruleIds(builder.getLastRuleDiff().getRemovedRules()));
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+			kieSession.fireAllRules();
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "Bla"));
+			assertEquals(2, accCount.getValue());
+
+			// The renamed rule uses the accumulate node, and memory, of the original rule.
+			assertSame(accumulateNode, findAccumulateNode(kieSession));
+			assertSame(accumulateMemory, ((InternalWorkingMemory) kieSession).getNodeMemory(accumulateNode));
+
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+			for (Event nextEvent : secondEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			assertEquals(3, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(5, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "Bla"));
+			assertEquals(3, accCount.getValue());
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * The first rule of <code>changedRules/rules-3.drl</code> only differs from the one in <code>changedRules/rules-2.drl</code> in the
+	 * order of its constraints. With the rules preserved on constraint reorder, the rule is deployed with its previous source, so it does
+	 * NOT refire for the event that was already in WM.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReorderedConstraintsPreserveRule() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-reordered-constraints", "1.0.0");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+		builder.setPreserveRulesOnConstraintReorder(true);
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("changedRules/rules-2.drl"));
+
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+
+			resources.put("rules.drl", kieServices.getResources().newClassPathResource("changedRules/rules-3.drl"));
+			kieModule = builder.build(releaseId, resources);
+
+			// The reordered rule is deployed with its previous source, so there's nothing to compile and no rule has changed.
+			assertEquals(Collections.emptyList(), builder.getLastCompiledResources());
+			assertEquals(Collections.emptyList(), builder.getLastRuleDiff().getChangedRules());
+			assertEquals(2, builder.getLastRuleDiff().getUnchangedRules().size());
+
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+			kieSession.fireAllRules();
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+
+			List<? extends Event> secondEvents = TestEventsFactory.getSecondSimpleEvents();
+			for (Event nextEvent : secondEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Two"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * In <code>changedRules/rules-5.drl</code> the first rule only has its constraints reordered compared to
+	 * <code>changedRules/rules-2.drl</code>, while the RHS of the second rule has changed. The DRL is recompiled for the changed rule, but the
+	 * reordered rule is deployed with its previous source, so it is unchanged and does NOT refire for the event that was already in WM.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testReorderedConstraintsPreserveRuleNextToChangedRule() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-reordered-and-changed", "1.0.0");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+		builder.setPreserveRulesOnConstraintReorder(true);
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("changedRules/rules-2.drl"));
+
+		InternalKieModule kieModule = builder.build(releaseId, resources);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+
+			resources.put("rules.drl", kieServices.getResources().newClassPathResource("changedRules/rules-5.drl"));
+			kieModule = builder.build(releaseId, resources);
+
+			assertEquals(Arrays.asList("src/main/resources/rules.drl"), builder.getLastCompiledResources());
+			assertEquals(Arrays.asList("org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-Two"),
+					ruleIds(builder.getLastRuleDiff().getChangedRules()));
+			assertEquals(Arrays.asList("org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-One"),
+					ruleIds(builder.getLastRuleDiff().getUnchangedRules()));
+
+			// The deployed DRL has the previous source of the reordered rule and the new source of the changed rule.
+			String deployedDrl = new String(kieModule.getBytes("rules.drl"), "UTF-8");
+			assertTrue(deployedDrl.contains("$s:SimpleEvent(code==\"MY_CODE\", $id:id==\"1\")"));
+			assertFalse(deployedDrl.contains("$s:SimpleEvent($id:id==\"1\", code==\"MY_CODE\")"));
+			assertTrue(deployedDrl.contains("CHANGED RHS!!!! Rule Two"));
+
+			deployAndUpdate(kieServices, kieContainer, kieModule);
+			kieSession.fireAllRules();
+			assertEquals(1, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * A rule that is renamed in a DRL with a different path can't be bridged, as Drools removes the original rule from its resource
+	 * before the renamed rule is added.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRenamedRuleInOtherResourceIsNotBridged() throws Exception {
+		KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-renamed-other-drl", "1.0.0");
+		ReleaseId bridgeReleaseId = kieServices.newReleaseId("org.kie", "test-incremental-kjar-builder-renamed-other-drl", "1.0.1");
+
+		IncrementalKieJarBuilder builder = new IncrementalKieJarBuilder(kieServices, createKieModuleModel(kieServices, true));
+
+		Map<String, Resource> resources = new HashMap<>();
+		resources.put("rules.drl", kieServices.getResources().newClassPathResource("accumulateRules/original-rules.drl"));
+		builder.build(releaseId, resources);
+
+		resources.clear();
+		resources.put("renamed-rules.drl", kieServices.getResources().newClassPathResource("accumulateRules/renamed-rules.drl"));
+		assertNull(builder.buildRenameBridge(bridgeReleaseId, resources));
+	}
+
+	private static AccumulateNode findAccumulateNode(KieSession kieSession) {
+		InternalKnowledgeBase kieBase = (InternalKnowledgeBase) kieSession.getKieBase();
+		for (ObjectTypeNode nextObjectTypeNode : kieBase.getRete().getObjectTypeNodes().values()) {
+			for (ObjectSink nextSink : nextObjectTypeNode.getObjectSinkPropagator().getSinks()) {
+				if (nextSink instanceof AccumulateNode) {
+					return (AccumulateNode) nextSink;
+				}
+			}
+		}
+		throw new IllegalStateException("No accumulate node found.");
+	}
+
+	private static List<String> ruleIds(List<RuleFingerprint> fingerprints) {
+		List<String> ruleIds = new ArrayList<>();
+		for (RuleFingerprint nextFingerprint : fingerprints) {
+			ruleIds.add(nextFingerprint.getRuleId());
+		}
+		return ruleIds;
+	}
+
+}
@@ -0,0 +1,75 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+
+/**
+ * Tests the {@link KieModuleCache}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class KieModuleCacheTest {
+
+	private final KieServices kieServices = KieServices.Factory.get();
+
+	/**
+	 * Rebuilding the same DRL under the same version returns the module that has already been deployed.
+	 */
+	@Test
+	public void testSameContentIsDeduplicated() {
+		KieModuleCache cache = new KieModuleCache(kieServices.getRepository(), 2);
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-module-cache-dedup", "1.0.0");
+
+		InternalKieModule kieModule = cache.deploy(createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl")));
+		InternalKieModule sameKieModule = cache.deploy(createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl")));
+
+		assertSame(kieModule, sameKieModule);
+		assertEquals(1, cache.getDeduplicatedModules());
+
+		InternalKieModule changedKieModule = cache.deploy(createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("changedRules/rules-1.drl")));
+		assertSame(changedKieModule, kieServices.getRepository().getKieModule(releaseId));
+		assertEquals(1, cache.getDeduplicatedModules());
+	}
+
+	/**
+	 * The least recently used version that is not pinned is evicted.
+	 */
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		KieModuleCache cache = new KieModuleCache(kieServices.getRepository(), 2);
+		ReleaseId firstReleaseId = kieServices.newReleaseId("org.kie", "test-module-cache-lru", "1.0.0");
+		ReleaseId secondReleaseId = kieServices.newReleaseId("org.kie", "test-module-cache-lru", "1.0.1");
+		ReleaseId thirdReleaseId = kieServices.newReleaseId("org.kie", "test-module-cache-lru", "1.0.2");
+		ReleaseId fourthReleaseId = kieServices.newReleaseId("org.kie", "test-module-cache-lru", "1.0.3");
+
+		cache.deploy(createKieJar(kieServices, firstReleaseId, kieServices.getResources().newClassPathResource("originalRules/rules.drl")));
+		cache.pin(firstReleaseId);
+		cache.deploy(createKieJar(kieServices, secondReleaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl")));
+		cache.deploy(createKieJar(kieServices, thirdReleaseId, kieServices.getResources().newClassPathResource("changedRules/rules-1.drl")));
+
+		assertTrue(cache.contains(firstReleaseId));
+		assertFalse(cache.contains(secondReleaseId));
+		assertEquals(Arrays.asList(firstReleaseId, thirdReleaseId), cache.getReleaseIds());
+
+		cache.unpin(firstReleaseId);
+		cache.touch(thirdReleaseId);
+		cache.deploy(createKieJar(kieServices, fourthReleaseId, kieServices.getResources().newClassPathResource("changedRules/rules-2.drl")));
+
+		assertEquals(Arrays.asList(thirdReleaseId, fourthReleaseId), cache.getReleaseIds());
+		assertEquals(2, cache.getEvictedModules());
+	}
+
+}
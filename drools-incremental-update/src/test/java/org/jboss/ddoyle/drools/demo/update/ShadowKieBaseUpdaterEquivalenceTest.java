@@ -0,0 +1,146 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.deployAndUpdate;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.core.time.impl.PseudoClockScheduler;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.KieTestUtils.ResourceWrapper;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Runs the scenarios of {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAddedRulesTest},
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateChangedRulesTest} and
+ * {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateDeletedRulesTest} once with a plain
+ * {@link KieContainer#updateToVersion(ReleaseId)} and once through {@link ShadowKieBaseUpdater#prepare(Callable, ShadowSessionWarmer)} and
+ * {@link ShadowKieBaseUpdater.PreparedUpdate#cutOver()}. The rules must fire the same number of times at every step of both runs.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+@RunWith(Parameterized.class)
+public class ShadowKieBaseUpdaterEquivalenceTest {
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> scenarios() {
+		return Arrays.asList(new Object[][] {
+				{ "added-rules-same-drl", "originalRules/rules.drl", "rules.drl", "addedRules/rules.drl", "rules.drl" },
+				{ "added-rules-different-drl", "originalRules/rules.drl", "originalRules.drl", "addedRules/rules.drl", "addedRules.drl" },
+				{ "changed-lhs-same-drl", "originalRules/rules.drl", "rules.drl", "changedRules/rules-1.drl", "rules.drl" },
+				{ "changed-lhs-different-drl", "originalRules/rules.drl", "originalRules.drl", "changedRules/rules-1.drl", "changedRules.drl" },
+				{ "changed-lhs-2-same-drl", "originalRules/rules.drl", "rules.drl", "changedRules/rules-2.drl", "rules.drl" },
+				{ "changed-lhs-3-same-drl", "originalRules/rules.drl", "rules.drl", "changedRules/rules-3.drl", "rules.drl" },
+				{ "changed-rhs-same-drl", "originalRules/rules.drl", "rules.drl", "changedRules/rules-4.drl", "rules.drl" },
+				{ "changed-constraint-order-same-drl", "changedRules/rules-2.drl", "rules.drl", "changedRules/rules-3.drl", "rules.drl" },
+				{ "deleted-rules-1-same-drl", "originalRules/rules.drl", "rules.drl", "deletedRules/rules-1.drl", "rules.drl" },
+				{ "deleted-rules-2-same-drl", "originalRules/rules.drl", "rules.drl", "deletedRules/rules-2.drl", "rules.drl" } });
+	}
+
+	private final String scenario;
+
+	private final String originalDrl;
+
+	private final String originalTargetName;
+
+	private final String updatedDrl;
+
+	private final String updatedTargetName;
+
+	public ShadowKieBaseUpdaterEquivalenceTest(String scenario, String originalDrl, String originalTargetName, String updatedDrl,
+			String updatedTargetName) {
+		this.scenario = scenario;
+		this.originalDrl = originalDrl;
+		this.originalTargetName = originalTargetName;
+		this.updatedDrl = updatedDrl;
+		this.updatedTargetName = updatedTargetName;
+	}
+
+	@Test
+	public void testCutOverIsEquivalentToUpdateToVersion() throws Exception {
+		List<Map<String, Long>> updateToVersionFireCounts = run(false);
+		List<Map<String, Long>> cutOverFireCounts = run(true);
+		assertEquals(updateToVersionFireCounts, cutOverFireCounts);
+	}
+
+	/**
+	 * Inserts the first events, updates the session, inserts the second events and advances the clock past the 10 seconds window of the
+	 * second rule, as the incremental update tests do.
+	 * 
+	 * @return the fire counts of the rules after each of these steps.
+	 */
+	private List<Map<String, Long>> run(boolean throughShadowUpdater) throws Exception {
+		final KieServices kieServices = KieServices.Factory.get();
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-shadow-equivalence-" + scenario
+				+ (throughShadowUpdater ? "-cut-over" : "-update-to-version"), "1.0.0");
+
+		kieServices.getRepository().addKieModule(
+				createKieJar(kieServices, releaseId, new ResourceWrapper(kieServices.getResources().newClassPathResource(originalDrl),
+						originalTargetName)));
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+			List<Map<String, Long>> fireCounts = new ArrayList<>();
+
+			insertAndFire(kieSession, TestEventsFactory.getFirstSimpleEvents());
+			fireCounts.add(rulesFiredListener.snapshot());
+
+			final InternalKieModule updatedKieModule = createKieJar(kieServices, releaseId, new ResourceWrapper(kieServices.getResources()
+					.newClassPathResource(updatedDrl), updatedTargetName));
+			if (throughShadowUpdater) {
+				ShadowKieBaseUpdater updater = new ShadowKieBaseUpdater(kieServices, kieContainer, executor);
+				updater.prepare(new Callable<InternalKieModule>() {
+					@Override
+					public InternalKieModule call() {
+						return updatedKieModule;
+					}
+				}, null).get().cutOver();
+			} else {
+				deployAndUpdate(kieServices, kieContainer, updatedKieModule);
+			}
+
+			insertAndFire(kieSession, TestEventsFactory.getSecondSimpleEvents());
+			fireCounts.add(rulesFiredListener.snapshot());
+
+			((PseudoClockScheduler) kieSession.getSessionClock()).advanceTime(12, TimeUnit.SECONDS);
+			kieSession.fireAllRules();
+			fireCounts.add(rulesFiredListener.snapshot());
+			return fireCounts;
+		} finally {
+			kieSession.dispose();
+			executor.shutdown();
+		}
+	}
+
+	private static void insertAndFire(KieSession kieSession, List<? extends Event> events) {
+		for (Event nextEvent : events) {
+			KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+			kieSession.fireAllRules();
+		}
+	}
+
+}
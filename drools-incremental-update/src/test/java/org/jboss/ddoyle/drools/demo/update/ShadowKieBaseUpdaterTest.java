@@ -0,0 +1,146 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.drools.compiler.compiler.io.memory.MemoryFileSystem;
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.compiler.kie.builder.impl.MemoryKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.listener.RulesFiredAgendaEventListener;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.update.ShadowKieBaseUpdater.PreparedUpdate;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Tests the {@link ShadowKieBaseUpdater}. The cut-over must give the same incremental update semantics as a plain
+ * {@link KieContainer#updateToVersion(ReleaseId)}, see {@link org.jboss.ddoyle.drools.demo.KieSessionRulesIncrementalUpdateAddedRulesTest}.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class ShadowKieBaseUpdaterTest {
+
+	private static final String BROKEN_DRL = "package org.jboss.ddoyle.drools.cep.sample;\n\n"
+			+ "rule \"Broken\"\nwhen\n\tNoSuchType()\nthen\nend\n";
+
+	@Test
+	public void testPreparedUpdateKeepsIncrementalSemantics() throws Exception {
+		final KieServices kieServices = KieServices.Factory.get();
+		final ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-shadow-kiebase-updater", "1.0.0");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+
+			ShadowKieBaseUpdater updater = new ShadowKieBaseUpdater(kieServices, kieContainer, executor);
+			PreparedUpdate preparedUpdate = updater.prepare(new Callable<InternalKieModule>() {
+				@Override
+				public InternalKieModule call() {
+					return createKieJar(kieServices, releaseId, kieServices.getResources().newClassPathResource("addedRules/rules.drl"));
+				}
+			}, null).get();
+			preparedUpdate.cutOver();
+			assertTrue(preparedUpdate.getCutOverTimeNanos() >= 0);
+
+			kieSession.fireAllRules();
+			// Only the added rule fires for the events that were already in the session.
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-Three"));
+		} finally {
+			kieSession.dispose();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * A KJAR that doesn't build is rejected by the preparation. It is not deployed, so the repository still holds the live module for the
+	 * same {@link ReleaseId}, and new containers and sessions for that {@link ReleaseId} get the live rules.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBrokenKieJarIsNotDeployed() throws Exception {
+		final KieServices kieServices = KieServices.Factory.get();
+		final ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-shadow-kiebase-updater-broken", "1.0.0");
+
+		final InternalKieModule kieModule = createKieJar(kieServices, releaseId,
+				kieServices.getResources().newClassPathResource("originalRules/rules.drl"));
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ShadowKieBaseUpdater updater = new ShadowKieBaseUpdater(kieServices, kieContainer, executor);
+			Future<PreparedUpdate> preparedUpdate = updater.prepare(new Callable<InternalKieModule>() {
+				@Override
+				public InternalKieModule call() {
+					// The original KJAR with a DRL that doesn't compile.
+					MemoryFileSystem memoryFileSystem = MemoryFileSystem.readFromJar(((MemoryKieModule) kieModule).getMemoryFileSystem()
+							.writeAsBytes());
+					memoryFileSystem.write("rules.drl", BROKEN_DRL.getBytes(Charset.forName("UTF-8")), true);
+					return new MemoryKieModule(releaseId, kieModule.getKieModuleModel(), memoryFileSystem);
+				}
+			}, null);
+			try {
+				preparedUpdate.get();
+				fail("A KJAR that doesn't build should be rejected.");
+			} catch (ExecutionException ee) {
+				assertTrue(ee.getCause() instanceof IllegalStateException);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertSame(kieModule, kieServices.getRepository().getKieModule(releaseId));
+		KieContainer newKieContainer = kieServices.newKieContainer(releaseId);
+		assertFalse(newKieContainer.verify().hasMessages(Message.Level.ERROR));
+
+		KieSession kieSession = newKieContainer.newKieSession();
+		try {
+			RulesFiredAgendaEventListener rulesFiredListener = new RulesFiredAgendaEventListener();
+			kieSession.addEventListener(rulesFiredListener);
+			for (Event nextEvent : TestEventsFactory.getFirstSimpleEvents()) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+			assertEquals(2, rulesFiredListener.getNrOfRulesFired("org.jboss.ddoyle.drools.cep.sample" + "-" + "SimpleTestRule-One"));
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+}
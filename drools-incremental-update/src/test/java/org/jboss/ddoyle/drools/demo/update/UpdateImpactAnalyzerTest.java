@@ -0,0 +1,193 @@
+package org.jboss.ddoyle.drools.demo.update;
+
+import static org.jboss.ddoyle.drools.demo.KieTestUtils.createKieJar;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.jboss.ddoyle.drools.demo.KieTestUtils;
+import org.jboss.ddoyle.drools.demo.KieTestUtils.ResourceWrapper;
+import org.jboss.ddoyle.drools.demo.TestEventsFactory;
+import org.jboss.ddoyle.drools.demo.model.v1.Event;
+import org.jboss.ddoyle.drools.demo.update.UpdateImpact.Flag;
+import org.junit.Test;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.model.KieBaseModel;
+import org.kie.api.builder.model.KieModuleModel;
+import org.kie.api.builder.model.KieSessionModel;
+import org.kie.api.conf.EqualityBehaviorOption;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.io.Resource;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.conf.ClockTypeOption;
+
+/**
+ * Tests the {@link UpdateImpactAnalyzer} against the actual behaviour of the update scenarios of the JUnit tests in
+ * <code>org.jboss.ddoyle.drools.demo</code>.
+ *
+ * @author <a href="mailto:duncan.doyle@redhat.com">Duncan Doyle</a>
+ */
+public class UpdateImpactAnalyzerTest {
+
+	private final KieServices kieServices = KieServices.Factory.get();
+
+	@Test
+	public void testAddedRule() throws Exception {
+		UpdateImpact impact = analyzeAndUpdate("test-impact-added-rules", new ResourceWrapper(kieServices.getResources().newClassPathResource(
+				"originalRules/rules.drl"), "rules.drl"), new ResourceWrapper(kieServices.getResources().newClassPathResource(
+				"addedRules/rules.drl"), "rules.drl"), 2);
+
+		assertEquals(EnumSet.noneOf(Flag.class), impact.getFlags());
+		assertEquals(2, impact.getActivationsCreated());
+		assertEquals(Integer.valueOf(2), impact.getActivationsCreatedByRule().get("org.jboss.ddoyle.drools.cep.sample-SimpleTestRule-Three"));
+		assertEquals(0, impact.getActivationsRefired());
+		assertEquals(0, impact.getActivationsCancelled());
+		assertEquals(2, impact.getFactsToPropagate());
+	}
+
+	/**
+	 * The README's "renamed DRL": all rules are new to Drools, so rule One refires for both events.
+	 */
+	@Test
+	public void testRenamedDrl() throws Exception {
+		UpdateImpact impact = analyzeAndUpdate("test-impact-renamed-drl", new ResourceWrapper(kieServices.getResources()
+				.newClassPathResource("originalRules/rules.drl"), "originalRules.drl"), new ResourceWrapper(kieServices.getResources()
+				.newClassPathResource("originalRules/rules.drl"), "rules.drl"), 2);
+
+		assertEquals(EnumSet.of(Flag.RESOURCE_RENAMED), impact.getFlags());
+		assertEquals(2, impact.getRuleDiff().getMovedRules().size());
+		assertEquals(2, impact.getActivationsRefired());
+		assertEquals(2, impact.getFactsToPropagate());
+	}
+
+	/**
+	 * The changed constraint of rule One only matches event 3, so the changed rule does not refire for the events in the session.
+	 */
+	@Test
+	public void testChangedConstraint() throws Exception {
+		UpdateImpact impact = analyzeAndUpdate("test-impact-changed-rules", new ResourceWrapper(kieServices.getResources()
+				.newClassPathResource("originalRules/rules.drl"), "rules.drl"), new ResourceWrapper(kieServices.getResources()
+				.newClassPathResource("changedRules/rules-1.drl"), "rules.drl"), 0);
+
+		assertEquals(EnumSet.of(Flag.RULES_CHANGED), impact.getFlags());
+		assertEquals(0, impact.getActivationsRefired());
+		assertEquals(2, impact.getFactsToPropagate());
+	}
+
+	@Test
+	public void testRenamedRule() throws Exception {
+		UpdateImpact impact = analyzeAndUpdate("test-impact-renamed-rules", new ResourceWrapper(kieServices.getResources()
+				.newClassPathResource("originalRules/rules.drl"), "rules.drl"), new ResourceWrapper(kieServices.getResources()
+				.newClassPathResource("renamedRules/rules-1.drl"), "rules.drl"), 2);
+
+		assertTrue(impact.getFlags().contains(Flag.RULES_RENAMED));
+		assertEquals(Integer.valueOf(2), impact.getActivationsCreatedByRule().get("org.jboss.ddoyle.drools.cep.sample-Bla"));
+		assertEquals(2, impact.getActivationsRefired());
+	}
+
+	/**
+	 * The rule added to the DRL of the other KieBase of the KJAR doesn't affect the session, nor do the rules of that KieBase, which have
+	 * the same names as the rules of the session's KieBase.
+	 */
+	@Test
+	public void testOtherKieBaseIsIgnored() throws Exception {
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", "test-impact-other-kiebase", "1.0.0");
+		ReleaseId newReleaseId = kieServices.newReleaseId("org.kie", "test-impact-other-kiebase", "1.0.1");
+
+		Resource originalRules = kieServices.getResources().newClassPathResource("originalRules/rules.drl");
+		kieServices.getRepository().addKieModule(createTwoKieBaseKieJar(releaseId, originalRules, originalRules));
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession("KSessionA");
+		try {
+			for (Event nextEvent : TestEventsFactory.getFirstSimpleEvents()) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			InternalKieModule candidateKieModule = createTwoKieBaseKieJar(newReleaseId, originalRules, kieServices.getResources()
+					.newClassPathResource("addedRules/rules.drl"));
+			UpdateImpact impact = new UpdateImpactAnalyzer(kieServices).analyze(kieContainer, candidateKieModule, kieSession);
+
+			assertEquals(EnumSet.noneOf(Flag.class), impact.getFlags());
+			assertEquals(2, impact.getRuleDiff().getUnchangedRules().size());
+			assertTrue(impact.getRuleDiff().getAddedRules().isEmpty());
+			assertEquals(0, impact.getActivationsCreated());
+			assertEquals(0, impact.getFactsToPropagate());
+
+			kieServices.getRepository().addKieModule(candidateKieModule);
+			kieContainer.updateToVersion(newReleaseId);
+			assertEquals(0, kieSession.fireAllRules());
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * Analyzes the update of a session with the first events from the original to the candidate version, then applies the update and
+	 * checks that the number of rules fired on the next {@link KieSession#fireAllRules()} matches the prediction.
+	 */
+	private UpdateImpact analyzeAndUpdate(String artifactId, ResourceWrapper original, ResourceWrapper candidate, int expectedRulesFired)
+			throws Exception {
+		ReleaseId releaseId = kieServices.newReleaseId("org.kie", artifactId, "1.0.0");
+		ReleaseId newReleaseId = kieServices.newReleaseId("org.kie", artifactId, "1.0.1");
+
+		InternalKieModule kieModule = createKieJar(kieServices, releaseId, original);
+		kieServices.getRepository().addKieModule(kieModule);
+
+		KieContainer kieContainer = kieServices.newKieContainer(releaseId);
+		KieSession kieSession = kieContainer.newKieSession();
+		try {
+			List<? extends Event> firstEvents = TestEventsFactory.getFirstSimpleEvents();
+			for (Event nextEvent : firstEvents) {
+				KieTestUtils.insertAndAdvance(kieSession, nextEvent);
+				kieSession.fireAllRules();
+			}
+
+			InternalKieModule candidateKieModule = createKieJar(kieServices, newReleaseId, candidate);
+			UpdateImpact impact = new UpdateImpactAnalyzer(kieServices).analyze(kieContainer, candidateKieModule, kieSession);
+
+			kieServices.getRepository().addKieModule(candidateKieModule);
+			kieContainer.updateToVersion(newReleaseId);
+			assertEquals(expectedRulesFired, impact.getActivationsCreated());
+			assertEquals(expectedRulesFired, kieSession.fireAllRules());
+			return impact;
+		} finally {
+			kieSession.dispose();
+		}
+	}
+
+	/**
+	 * Creates a KJAR with KieBase <code>KBaseA</code> of package <code>rulesA</code> and KieBase <code>KBaseB</code> of package
+	 * <code>rulesB</code>.
+	 */
+	private InternalKieModule createTwoKieBaseKieJar(ReleaseId releaseId, Resource rulesA, Resource rulesB) {
+		KieModuleModel kieModuleModel = kieServices.newKieModuleModel();
+		for (String nextName : new String[] { "A", "B" }) {
+			KieBaseModel kieBaseModel = kieModuleModel.newKieBaseModel("KBase" + nextName).addPackage("rules" + nextName)
+					.setEqualsBehavior(EqualityBehaviorOption.EQUALITY).setEventProcessingMode(EventProcessingOption.STREAM);
+			kieBaseModel.newKieSessionModel("KSession" + nextName).setType(KieSessionModel.KieSessionType.STATEFUL)
+					.setClockType(ClockTypeOption.get("pseudo"));
+		}
+
+		KieFileSystem kieFileSystem = kieServices.newKieFileSystem();
+		kieFileSystem.writeKModuleXML(kieModuleModel.toXML());
+		kieFileSystem.writePomXML(KieTestUtils.getPom(releaseId));
+		kieFileSystem.write("src/main/resources/rulesA/rules.drl", rulesA);
+		kieFileSystem.write("src/main/resources/rulesB/rules.drl", rulesB);
+
+		KieBuilder kieBuilder = kieServices.newKieBuilder(kieFileSystem);
+		if (!kieBuilder.buildAll().getResults().getMessages().isEmpty()) {
+			throw new IllegalStateException("Error creating KieBuilder.");
+		}
+		return (InternalKieModule) kieBuilder.getKieModule();
+	}
+
+}